@@ -0,0 +1,103 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Synthetic window-like images for benchmarks.
+ */
+final class BenchmarkImages {
+
+	/**
+	 * @param size Size as WIDTHxHEIGHT, for example 800x600.
+	 * @return Width and height.
+	 */
+	static int[] parseSize(final String size) {
+		final String[] parts = size.split("x");
+		return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+	}
+
+	/**
+	 * Draws a deterministic image resembling a window with panels, buttons and
+	 * text.
+	 */
+	static BufferedImage window(final int width, final int height) {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setColor(new Color(238, 238, 238));
+		g.fillRect(0, 0, width, height);
+
+		final Random random = new Random(1234);
+		g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+		for (int y = 10; y < (height - 40); y += 60) {
+			for (int x = 10; x < (width - 120); x += 140) {
+				g.setColor(new Color(random.nextInt(0xFFFFFF)));
+				g.fillRoundRect(x, y, 120, 40, 8, 8);
+				g.setColor(Color.BLACK);
+				g.drawRoundRect(x, y, 120, 40, 8, 8);
+				g.drawString("Button " + x + "," + y, x + 10, y + 25);
+			}
+		}
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Copies an image, changing each color channel of every pixel by a random
+	 * amount in [-noise, noise].
+	 */
+	static BufferedImage addNoise(final BufferedImage source, final int noise) {
+		final BufferedImage output = new BufferedImage(source.getWidth(), source.getHeight(),
+				BufferedImage.TYPE_INT_ARGB);
+		final Random random = new Random(5678);
+		for (int y = 0; y < source.getHeight(); ++y) {
+			for (int x = 0; x < source.getWidth(); ++x) {
+				final int c = source.getRGB(x, y);
+				if (noise == 0) {
+					output.setRGB(x, y, c);
+				} else {
+					final int r = clamp(((c >> 16) & 0xFF) + random.nextInt((2 * noise) + 1) - noise);
+					final int gr = clamp(((c >> 8) & 0xFF) + random.nextInt((2 * noise) + 1) - noise);
+					final int b = clamp((c & 0xFF) + random.nextInt((2 * noise) + 1) - noise);
+					output.setRGB(x, y, (c & 0xFF000000) | (r << 16) | (gr << 8) | b);
+				}
+			}
+		}
+		return output;
+	}
+
+	private static int clamp(final int v) {
+		return Math.max(0, Math.min(255, v));
+	}
+
+	private BenchmarkImages() {
+		// Static helpers only
+	}
+}
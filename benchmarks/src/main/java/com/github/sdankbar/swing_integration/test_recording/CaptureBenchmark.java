@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.GridLayout;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of painting a Swing component hierarchy into an image, as
+ * TestRecorder.takeScreenshot() does for the active window. The components are
+ * never shown, so no display is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CaptureBenchmark {
+
+	@Param({ "800x600", "1920x1080", "3840x2160" })
+	public String size;
+
+	private JPanel panel;
+
+	@Setup
+	public void setup() throws InvocationTargetException, InterruptedException {
+		final int[] s = BenchmarkImages.parseSize(size);
+		SwingUtilities.invokeAndWait(() -> {
+			final JPanel buttons = new JPanel(new GridLayout(0, 8));
+			for (int i = 0; i < 64; ++i) {
+				buttons.add(new JButton("Button " + i));
+			}
+
+			final Object[][] rows = new Object[200][4];
+			for (int i = 0; i < rows.length; ++i) {
+				rows[i] = new Object[] { "Row " + i, i, i * 2.5, (i % 2) == 0 };
+			}
+
+			panel = new JPanel(new BorderLayout());
+			panel.add(new JLabel("Offscreen capture benchmark"), BorderLayout.NORTH);
+			panel.add(buttons, BorderLayout.WEST);
+			panel.add(new JScrollPane(new JTable(rows, new Object[] { "Name", "Index", "Value", "Even" })),
+					BorderLayout.CENTER);
+			panel.add(new JTextField("Some text"), BorderLayout.SOUTH);
+			panel.setSize(s[0], s[1]);
+			layoutAll(panel);
+		});
+	}
+
+	private static void layoutAll(final Container c) {
+		c.doLayout();
+		for (final Component child : c.getComponents()) {
+			if (child instanceof Container) {
+				layoutAll((Container) child);
+			}
+		}
+	}
+
+	@Benchmark
+	public BufferedImage paintToImage() throws InvocationTargetException, InterruptedException {
+		final BufferedImage[] image = new BufferedImage[1];
+		SwingUtilities.invokeAndWait(() -> image[0] = TestRecorder.paintToImage(panel));
+		return image[0];
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of reading reference images and writing captures and deltas as
+ * PNG, and of reconstructing a reference stored as a delta against the
+ * previous checkpoint where a text field's worth of the window changed. Noise
+ * makes the images less compressible.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageCodecBenchmark {
+
+	@Param({ "800x600", "1920x1080", "3840x2160" })
+	public String size;
+
+	@Param({ "0", "32" })
+	public int noise;
+
+	private BufferedImage image;
+	private File imageFile;
+	private File outputFile;
+	private File deltaFile;
+
+	@Setup
+	public void setup() throws IOException {
+		final int[] s = BenchmarkImages.parseSize(size);
+		image = BenchmarkImages.addNoise(BenchmarkImages.window(s[0], s[1]), noise);
+		imageFile = File.createTempFile("reference", ".png");
+		outputFile = File.createTempFile("output", ".png");
+		ImageIO.write(image, "PNG", imageFile);
+
+		final BufferedImage changed = ImageTiles.copy(image);
+		final Graphics2D g = changed.createGraphics();
+		g.setColor(Color.BLACK);
+		g.drawString("Hello World Clicked", 40, 60);
+		g.dispose();
+		deltaFile = File.createTempFile("reference", ReferenceDelta.EXTENSION);
+		new ReferenceDelta("base.png", image.getWidth(), image.getHeight(),
+				ImageTiles.changedTiles(image, changed, ImageTiles.DEFAULT_TILE_SIZE)).write(deltaFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(imageFile.toPath());
+		Files.deleteIfExists(outputFile.toPath());
+		Files.deleteIfExists(deltaFile.toPath());
+	}
+
+	@Benchmark
+	public BufferedImage readImage() {
+		return ReferenceImageStore.readImage(imageFile);
+	}
+
+	@Benchmark
+	public BufferedImage readDelta() throws IOException {
+		return ReferenceDelta.read(deltaFile).apply(image);
+	}
+
+	@Benchmark
+	public boolean writeImage() throws IOException {
+		return ImageIO.write(image, "PNG", outputFile);
+	}
+}
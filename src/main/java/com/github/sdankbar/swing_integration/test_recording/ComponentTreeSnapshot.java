@@ -0,0 +1,217 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.AbstractButton;
+import javax.swing.FocusManager;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Canonical text form of a window's component hierarchy. Each component is
+ * written as one line containing its class, name, bounds, visibility, enabled
+ * state and text. Two snapshots can be compared in constant time using their
+ * rolling hash.
+ */
+public final class ComponentTreeSnapshot {
+
+	private static final long HASH_MULTIPLIER = 1099511628211L;
+
+	/**
+	 * Captures the hierarchy of the active window. Runs on the event dispatch
+	 * thread.
+	 *
+	 * @return The snapshot or null if there is no active window.
+	 */
+	public static ComponentTreeSnapshot capture() {
+		final Window w = FocusManager.getCurrentManager().getActiveWindow();
+		if (w == null) {
+			return null;
+		}
+		return capture(w);
+	}
+
+	/**
+	 * Captures the hierarchy of a window. Runs on the event dispatch thread.
+	 *
+	 * @param window Window to capture.
+	 * @return The snapshot.
+	 */
+	public static ComponentTreeSnapshot capture(final Window window) {
+		Objects.requireNonNull(window, "window is null");
+		return capture((Component) window);
+	}
+
+	static ComponentTreeSnapshot capture(final Component root) {
+		final FutureTask<ComponentTreeSnapshot> task = new FutureTask<>(() -> {
+			final List<String> lines = new ArrayList<>();
+			appendComponent(root, 0, true, lines);
+			return new ComponentTreeSnapshot(lines);
+		});
+		if (SwingUtilities.isEventDispatchThread()) {
+			task.run();
+		} else {
+			SwingUtilities.invokeLater(task);
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Failed capturing component tree", e);
+		}
+	}
+
+	/**
+	 * Reads a snapshot previously written by write().
+	 *
+	 * @param file Snapshot file.
+	 * @return The snapshot.
+	 */
+	public static ComponentTreeSnapshot read(final File file) {
+		try {
+			return new ComponentTreeSnapshot(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+		} catch (final IOException e) {
+			throw new RuntimeException("Failed reading component tree file:" + file.getAbsolutePath(), e);
+		}
+	}
+
+	private static void appendComponent(final Component c, final int depth, final boolean isRoot,
+			final List<String> lines) {
+		final StringBuilder line = new StringBuilder();
+		for (int i = 0; i < depth; ++i) {
+			line.append(' ');
+		}
+
+		// The root's location is where the window happens to be on screen.
+		final Rectangle bounds = c.getBounds();
+		if (isRoot) {
+			bounds.setLocation(0, 0);
+		}
+
+		line.append(c.getClass().getName());
+		line.append('|').append(escape(c.getName()));
+		line.append('|').append(bounds.x).append(',').append(bounds.y).append(',').append(bounds.width).append(',')
+				.append(bounds.height);
+		line.append('|').append(c.isVisible() ? 'V' : '-').append(c.isEnabled() ? 'E' : '-');
+		line.append('|').append(escape(getText(c)));
+		lines.add(line.toString());
+
+		if (c instanceof Container) {
+			for (final Component child : ((Container) c).getComponents()) {
+				appendComponent(child, depth + 1, false, lines);
+			}
+		}
+	}
+
+	private static String getText(final Component c) {
+		if (c instanceof AbstractButton) {
+			return ((AbstractButton) c).getText();
+		} else if (c instanceof JLabel) {
+			return ((JLabel) c).getText();
+		} else if (c instanceof JTextComponent) {
+			return ((JTextComponent) c).getText();
+		} else {
+			return null;
+		}
+	}
+
+	static String escape(final String s) {
+		if (s == null) {
+			return "";
+		}
+		return s.replace("\\", "\\\\").replace("|", "\\p").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private final List<String> lines;
+	private final long hash;
+
+	private ComponentTreeSnapshot(final List<String> lines) {
+		this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+
+		long h = 0;
+		for (final String line : this.lines) {
+			for (int i = 0; i < line.length(); ++i) {
+				h = (h * HASH_MULTIPLIER) + line.charAt(i);
+			}
+			h = (h * HASH_MULTIPLIER) + '\n';
+		}
+		hash = h;
+	}
+
+	/**
+	 * @return Rolling hash of the canonical form.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @return One line per component, depth first, indented by depth.
+	 */
+	public List<String> getLines() {
+		return lines;
+	}
+
+	/**
+	 * Describes the first component that differs between two snapshots.
+	 *
+	 * @param other Snapshot to compare against.
+	 * @return Description of the difference or null if the snapshots are equal.
+	 */
+	public String firstDifference(final ComponentTreeSnapshot other) {
+		final int count = Math.max(lines.size(), other.lines.size());
+		for (int i = 0; i < count; ++i) {
+			final String expected = i < lines.size() ? lines.get(i) : "<none>";
+			final String actual = i < other.lines.size() ? other.lines.get(i) : "<none>";
+			if (!expected.equals(actual)) {
+				return "line " + (i + 1) + " expected [" + expected + "] but was [" + actual + "]";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the canonical form to a file.
+	 *
+	 * @param file Output file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(final File file) throws IOException {
+		Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,322 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import javax.imageio.ImageIO;
+import javax.swing.FocusManager;
+
+/**
+ * Continuously captures the active window into a fixed size, in memory ring of
+ * frames so that the moments leading up to a failed comparison can be written
+ * to disk. Each frame only stores the tiles that changed since the previous
+ * frame. Frames are annotated with the actions replayed since the previous
+ * frame.
+ */
+public final class FlightRecorder {
+
+	private static final Set<FlightRecorder> RUNNING = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	/**
+	 * Stops every recorder still running in this JVM, for example because a test
+	 * failed before stopping its own.
+	 */
+	static void stopAll() {
+		for (final FlightRecorder r : RUNNING) {
+			r.stop();
+		}
+	}
+
+	private static class Frame {
+		private final long timeNanos;
+		private final int width;
+		private final int height;
+		private final List<ImageTiles.Tile> tiles;
+		private final List<String> annotations;
+		private final long bytes;
+
+		Frame(final long timeNanos, final int width, final int height, final List<ImageTiles.Tile> tiles,
+				final List<String> annotations) {
+			this.timeNanos = timeNanos;
+			this.width = width;
+			this.height = height;
+			this.tiles = tiles;
+			this.annotations = annotations;
+			long b = 0;
+			for (final ImageTiles.Tile t : tiles) {
+				b += 4L * t.pixels.length;
+			}
+			bytes = b;
+		}
+	}
+
+	private final int capacity;
+	private final long periodNanos;
+	private final LongConsumer overheadListener;
+	private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+	private final Queue<String> pendingAnnotations = new ConcurrentLinkedQueue<>();
+	private ScheduledExecutorService scheduler = null;
+
+	// State of the window before the oldest frame in the ring.
+	private BufferedImage base = null;
+	// Unreleased snapshots that share base. base is copied before it is next
+	// changed if any do.
+	private int basePins = 0;
+	// Most recent capture.
+	private BufferedImage last = null;
+	private long storedBytes = 0;
+
+	private final AtomicLong captureCount = new AtomicLong();
+	private final AtomicLong captureNanos = new AtomicLong();
+
+	/**
+	 * @param framesPerSecond  Capture rate.
+	 * @param capacity         Maximum number of frames kept.
+	 * @param overheadListener Told how many nanoseconds each capture took.
+	 */
+	FlightRecorder(final int framesPerSecond, final int capacity, final LongConsumer overheadListener) {
+		if ((framesPerSecond <= 0) || (capacity <= 0)) {
+			throw new IllegalArgumentException("framesPerSecond and capacity must be positive");
+		}
+		this.capacity = capacity;
+		periodNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+		this.overheadListener = overheadListener;
+	}
+
+	synchronized void start() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread t = new Thread(r, "TestRunner-flight-recorder");
+				t.setDaemon(true);
+				return t;
+			});
+			scheduler.scheduleAtFixedRate(this::captureFrame, 0, periodNanos, TimeUnit.NANOSECONDS);
+			RUNNING.add(this);
+		}
+	}
+
+	synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+			RUNNING.remove(this);
+		}
+	}
+
+	synchronized boolean isRunning() {
+		return scheduler != null;
+	}
+
+	/**
+	 * Attaches a note to the next captured frame.
+	 */
+	void annotate(final String annotation) {
+		pendingAnnotations.add(annotation);
+	}
+
+	private void captureFrame() {
+		if (FocusManager.getCurrentManager().getActiveWindow() == null) {
+			return;
+		}
+
+		final long start = System.nanoTime();
+		final BufferedImage image = TestRecorder.takeScreenshot();
+		if (image != null) {
+			record(image, start);
+		}
+
+		final long elapsed = System.nanoTime() - start;
+		captureCount.incrementAndGet();
+		captureNanos.addAndGet(elapsed);
+		overheadListener.accept(elapsed);
+	}
+
+	/**
+	 * Adds a captured image to the ring as a frame holding the tiles that
+	 * changed and the annotations made since the previous capture.
+	 */
+	void record(final BufferedImage image, final long timeNanos) {
+		final List<String> annotations = new ArrayList<>();
+		String a;
+		while ((a = pendingAnnotations.poll()) != null) {
+			annotations.add(a);
+		}
+
+		synchronized (this) {
+			final List<ImageTiles.Tile> tiles = ImageTiles.changedTiles(last, image, ImageTiles.DEFAULT_TILE_SIZE);
+			last = image;
+			if (!tiles.isEmpty() || !annotations.isEmpty()) {
+				addFrame(new Frame(timeNanos, image.getWidth(), image.getHeight(), tiles, annotations));
+			}
+		}
+	}
+
+	private void addFrame(final Frame f) {
+		frames.addLast(f);
+		storedBytes += f.bytes;
+		while (frames.size() > capacity) {
+			final Frame oldest = frames.removeFirst();
+			storedBytes -= oldest.bytes;
+			if (basePins > 0) {
+				base = ImageTiles.copy(base);
+				basePins = 0;
+			}
+			base = ImageTiles.apply(base, oldest.width, oldest.height, oldest.tiles);
+		}
+	}
+
+	private synchronized void release(final Snapshot s) {
+		if ((s.base != null) && (s.base == base)) {
+			--basePins;
+		}
+	}
+
+	/**
+	 * Frames held in the ring at one moment, unaffected by later captures. Taking
+	 * a snapshot copies no pixels. Until it is released, the recorder copies the
+	 * oldest frame's state before changing it, so release snapshots that will not
+	 * be written.
+	 */
+	static final class Snapshot {
+		private final FlightRecorder recorder;
+		private final List<Frame> frames;
+		private final BufferedImage base;
+		private final long timeNanos;
+		private boolean released = false;
+
+		private Snapshot(final FlightRecorder recorder, final List<Frame> frames, final BufferedImage base,
+				final long timeNanos) {
+			this.recorder = recorder;
+			this.frames = frames;
+			this.base = base;
+			this.timeNanos = timeNanos;
+		}
+
+		/**
+		 * Lets the recorder reuse the memory of the oldest frame again. The snapshot
+		 * must not be written afterwards.
+		 */
+		synchronized void release() {
+			if (!released) {
+				released = true;
+				recorder.release(this);
+			}
+		}
+
+		/**
+		 * Writes every frame as a PNG, plus frames.txt listing each frame's time
+		 * relative to the snapshot and its annotations. Frames from an earlier
+		 * dump to the same directory are deleted first.
+		 *
+		 * @param directory Output directory, created if needed.
+		 * @throws IOException If writing fails.
+		 */
+		synchronized void write(final File directory) throws IOException {
+			if (released) {
+				throw new IllegalStateException("Snapshot already released");
+			}
+			directory.mkdirs();
+			final File[] old = directory.listFiles((d, name) -> name.startsWith("frame_") && name.endsWith(".png"));
+			if (old != null) {
+				for (final File f : old) {
+					Files.delete(f.toPath());
+				}
+			}
+
+			BufferedImage image = base == null ? null : ImageTiles.copy(base);
+			try (BufferedWriter index = new BufferedWriter(new FileWriter(new File(directory, "frames.txt")))) {
+				for (int i = 0; i < frames.size(); ++i) {
+					final Frame f = frames.get(i);
+					image = ImageTiles.apply(image, f.width, f.height, f.tiles);
+					final String name = String.format("frame_%04d.png", i);
+					ImageIO.write(image, "PNG", new File(directory, name));
+					index.write(name + " " + TimeUnit.NANOSECONDS.toMillis(f.timeNanos - timeNanos) + "ms");
+					for (final String a : f.annotations) {
+						index.write(" [" + a + "]");
+					}
+					index.write("\n");
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The frames currently in the ring, to be written later and then
+	 *         released.
+	 */
+	synchronized Snapshot snapshot() {
+		if (base != null) {
+			++basePins;
+		}
+		return new Snapshot(this, new ArrayList<>(frames), base, System.nanoTime());
+	}
+
+	/**
+	 * @return Number of frames captured since starting.
+	 */
+	public long getCaptureCount() {
+		return captureCount.get();
+	}
+
+	/**
+	 * @return Total time spent capturing and diffing frames.
+	 */
+	public Duration getCaptureTime() {
+		return Duration.ofNanos(captureNanos.get());
+	}
+
+	/**
+	 * @return Bytes of pixel data currently held in the ring, excluding the base
+	 *         and last frames.
+	 */
+	public synchronized long getStoredBytes() {
+		return storedBytes;
+	}
+
+	/**
+	 * @return Number of frames currently held in the ring.
+	 */
+	public synchronized int getFrameCount() {
+		return frames.size();
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pixel comparisons between screenshots and reference images.
+ */
+final class ImageComparison {
+
+	static BufferedImage generateDelta(final BufferedImage source, final BufferedImage target,
+			final boolean whiteEquals) {
+		if (source.getWidth() != target.getWidth()) {
+			return null;
+		} else if (source.getHeight() != target.getHeight()) {
+			return null;
+		} else {
+			final BufferedImage output = new BufferedImage(source.getWidth(), source.getHeight(),
+					BufferedImage.TYPE_INT_ARGB);
+
+			for (int x = 0; x < source.getWidth(); ++x) {
+				for (int y = 0; y < source.getHeight(); ++y) {
+					final int sColor = source.getRGB(x, y);
+					final int tColor = target.getRGB(x, y);
+					final int deltaR = Math.abs(red(sColor) - red(tColor));
+					final int deltaG = Math.abs(green(sColor) - green(tColor));
+					final int deltaB = Math.abs(blue(sColor) - blue(tColor));
+					if (whiteEquals && (deltaR == 0) && (deltaG == 0) && (deltaB == 0)) {
+						output.setRGB(x, y, new Color(255, 255, 255).getRGB());
+					} else {
+						output.setRGB(x, y, new Color(deltaR, deltaG, deltaB).getRGB());
+					}
+				}
+			}
+
+			return output;
+		}
+	}
+
+	private static int red(final int c) {
+		return (c >> 16) & 0xFF;
+	}
+
+	private static int green(final int c) {
+		return (c >> 8) & 0xFF;
+	}
+
+	private static int blue(final int c) {
+		return (c >> 0) & 0xFF;
+	}
+
+	static double getPeakSignalToNoiseRatio(final BufferedImage source, final BufferedImage target) {
+		if ((source == null) || (target == null)) {
+			return 0;
+		} else if (source.getWidth() != target.getWidth()) {
+			return 0;
+		} else if (source.getHeight() != target.getHeight()) {
+			return 0;
+		} else {
+			long sqSum = 0;
+			final int pixelCount = source.getWidth() * source.getHeight();
+			for (int x = 0; x < source.getWidth(); ++x) {
+				for (int y = 0; y < source.getHeight(); ++y) {
+					final int sColor = source.getRGB(x, y);
+					final int tColor = target.getRGB(x, y);
+					final int deltaR = red(sColor) - red(tColor);
+					final int deltaG = green(sColor) - green(tColor);
+					final int deltaB = blue(sColor) - blue(tColor);
+					sqSum += (deltaR * deltaR) + (deltaG * deltaG) + (deltaB * deltaB);
+				}
+			}
+
+			final double meanSquareError = sqSum / (3.0 * pixelCount);
+			if (meanSquareError == 0) {
+				// Avoid division by 0.
+				return 1000;
+			} else {
+				final double peakSignalToNoiseRatio = 10 * Math.log10((255 * 255) / meanSquareError);
+				return Math.min(peakSignalToNoiseRatio, 1000.0);
+			}
+		}
+	}
+
+	private ImageComparison() {
+		// Static helpers only
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Splits images into square tiles so that only the tiles that changed between
+ * two images need to be stored.
+ */
+final class ImageTiles {
+
+	static final int DEFAULT_TILE_SIZE = 32;
+
+	/**
+	 * Rectangular block of ARGB pixels.
+	 */
+	static final class Tile {
+		final int x;
+		final int y;
+		final int width;
+		final int height;
+		final int[] pixels;
+
+		Tile(final int x, final int y, final int width, final int height, final int[] pixels) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.pixels = pixels;
+		}
+	}
+
+	/**
+	 * Returns the tiles of current that differ from previous. If previous is null
+	 * or a different size, every tile of current is returned.
+	 */
+	static List<Tile> changedTiles(final BufferedImage previous, final BufferedImage current, final int tileSize) {
+		Objects.requireNonNull(current, "current is null");
+		final boolean full = (previous == null) || (previous.getWidth() != current.getWidth())
+				|| (previous.getHeight() != current.getHeight());
+
+		final List<Tile> tiles = new ArrayList<>();
+		final int[] previousPixels = new int[tileSize * tileSize];
+		for (int y = 0; y < current.getHeight(); y += tileSize) {
+			for (int x = 0; x < current.getWidth(); x += tileSize) {
+				final int w = Math.min(tileSize, current.getWidth() - x);
+				final int h = Math.min(tileSize, current.getHeight() - y);
+				final int[] pixels = current.getRGB(x, y, w, h, null, 0, w);
+				if (!full) {
+					previous.getRGB(x, y, w, h, previousPixels, 0, w);
+					if (equals(pixels, previousPixels, w * h)) {
+						continue;
+					}
+				}
+				tiles.add(new Tile(x, y, w, h, pixels));
+			}
+		}
+		return tiles;
+	}
+
+	private static boolean equals(final int[] a, final int[] b, final int length) {
+		for (int i = 0; i < length; ++i) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes tiles into an image of the given size. The image is reused if it
+	 * already has that size, otherwise a new image is returned.
+	 */
+	static BufferedImage apply(final BufferedImage image, final int width, final int height,
+			final List<Tile> tiles) {
+		BufferedImage output = image;
+		if ((output == null) || (output.getWidth() != width) || (output.getHeight() != height)) {
+			output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		}
+		if (output.getType() == BufferedImage.TYPE_INT_ARGB) {
+			// Copy rows directly, setRGB converts every pixel through the color model.
+			final int[] data = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+			for (final Tile t : tiles) {
+				for (int row = 0; row < t.height; ++row) {
+					System.arraycopy(t.pixels, row * t.width, data, ((t.y + row) * width) + t.x, t.width);
+				}
+			}
+		} else {
+			for (final Tile t : tiles) {
+				output.setRGB(t.x, t.y, t.width, t.height, t.pixels, 0, t.width);
+			}
+		}
+		return output;
+	}
+
+	static BufferedImage copy(final BufferedImage image) {
+		final BufferedImage output = new BufferedImage(image.getWidth(), image.getHeight(),
+				BufferedImage.TYPE_INT_ARGB);
+		if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+			image.copyData(output.getRaster());
+			return output;
+		}
+		output.setRGB(0, 0, image.getWidth(), image.getHeight(),
+				image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()), 0,
+				image.getWidth());
+		return output;
+	}
+
+	private ImageTiles() {
+		// Static helpers only
+	}
+}
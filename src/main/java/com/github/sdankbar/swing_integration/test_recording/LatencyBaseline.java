@@ -0,0 +1,100 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Handling times recorded by TestRecorder, one "checkpoint,step,microseconds"
+ * line per step, and the check of replayed steps against them.
+ */
+final class LatencyBaseline {
+
+	static LatencyBaseline read(final File baselineFile, final double factor, final Duration slack) {
+		Objects.requireNonNull(baselineFile, "baselineFile is null");
+		try {
+			return parse(Files.readAllLines(baselineFile.toPath(), StandardCharsets.UTF_8), factor, slack);
+		} catch (final IOException | NumberFormatException e) {
+			throw new RuntimeException("Failed reading latency baseline:" + baselineFile.getAbsolutePath(), e);
+		}
+	}
+
+	static LatencyBaseline parse(final List<String> lines, final double factor, final Duration slack) {
+		final LatencyBaseline baseline = new LatencyBaseline(factor, slack);
+		for (final String line : lines) {
+			// Split from the end since checkpoint file names may contain commas.
+			final int second = line.lastIndexOf(',');
+			final int first = line.lastIndexOf(',', second - 1);
+			if ((first < 0) || line.startsWith("#")) {
+				continue;
+			}
+			baseline.latencies.put(line.substring(0, second),
+					Duration.ofNanos(Long.parseLong(line.substring(second + 1).trim()) * 1000));
+		}
+		return baseline;
+	}
+
+	private final Map<String, Duration> latencies = new HashMap<>();
+	private final double factor;
+	private final Duration slack;
+
+	private LatencyBaseline(final double factor, final Duration slack) {
+		this.factor = factor;
+		this.slack = Objects.requireNonNull(slack, "slack is null");
+	}
+
+	/**
+	 * @return The recorded handling time of a step, or null if none was recorded.
+	 */
+	Duration get(final String checkpoint, final int step) {
+		return latencies.get(checkpoint + "," + step);
+	}
+
+	/**
+	 * @return Description of how the step exceeded its recorded handling time
+	 *         times factor plus slack, or null if it did not or either time is
+	 *         unknown.
+	 */
+	String check(final StepLatency latency) {
+		final Duration recorded = get(latency.getCheckpoint(), latency.getStep());
+		final Duration handling = latency.getHandlingTime();
+		if ((recorded == null) || (handling == null)) {
+			return null;
+		}
+
+		final long limitNanos = (long) (recorded.toNanos() * factor) + slack.toNanos();
+		if (handling.toNanos() > limitNanos) {
+			return "Step " + latency.getStep() + " before " + latency.getCheckpoint() + " took " + handling.toMillis()
+					+ "ms to handle, recorded " + recorded.toMillis() + "ms";
+		}
+		return null;
+	}
+}
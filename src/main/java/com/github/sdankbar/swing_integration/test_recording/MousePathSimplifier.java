@@ -0,0 +1,122 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.Point;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Ramer-Douglas-Peucker simplification of recorded mouse paths.
+ */
+final class MousePathSimplifier {
+
+	/**
+	 * Determines which points of a path must be kept so that no removed point is
+	 * further than tolerance pixels from the simplified path. The first and last
+	 * points, as well as any point flagged in pinned, are always kept.
+	 *
+	 * @param path      Points of the path, in order.
+	 * @param pinned    Points that must be kept. May be null.
+	 * @param tolerance Maximum distance, in pixels, of a removed point from the
+	 *                  simplified path.
+	 * @return Array, parallel to path, that is true for each point to keep.
+	 */
+	static boolean[] simplify(final List<Point> path, final boolean[] pinned, final double tolerance) {
+		Objects.requireNonNull(path, "path is null");
+		final int count = path.size();
+		final boolean[] keep = new boolean[count];
+		if (count <= 2) {
+			for (int i = 0; i < count; ++i) {
+				keep[i] = true;
+			}
+			return keep;
+		}
+
+		keep[0] = true;
+		keep[count - 1] = true;
+
+		// Pinned points split the path into independently simplified sections.
+		int sectionStart = 0;
+		for (int i = 1; i < count; ++i) {
+			if ((i == (count - 1)) || ((pinned != null) && pinned[i])) {
+				keep[i] = true;
+				simplifySection(path, sectionStart, i, tolerance, keep);
+				sectionStart = i;
+			}
+		}
+
+		return keep;
+	}
+
+	private static void simplifySection(final List<Point> path, final int start, final int end,
+			final double tolerance, final boolean[] keep) {
+		// Iterative to avoid deep recursion on long recordings.
+		final Deque<int[]> pending = new ArrayDeque<>();
+		pending.push(new int[] { start, end });
+		while (!pending.isEmpty()) {
+			final int[] range = pending.pop();
+			final int first = range[0];
+			final int last = range[1];
+			if ((last - first) < 2) {
+				continue;
+			}
+
+			double maxDistance = -1;
+			int maxIndex = first;
+			for (int i = first + 1; i < last; ++i) {
+				final double d = distanceToSegment(path.get(i), path.get(first), path.get(last));
+				if (d > maxDistance) {
+					maxDistance = d;
+					maxIndex = i;
+				}
+			}
+
+			if (maxDistance > tolerance) {
+				keep[maxIndex] = true;
+				pending.push(new int[] { first, maxIndex });
+				pending.push(new int[] { maxIndex, last });
+			}
+		}
+	}
+
+	private static double distanceToSegment(final Point p, final Point a, final Point b) {
+		final double dx = b.x - a.x;
+		final double dy = b.y - a.y;
+		final double lengthSq = (dx * dx) + (dy * dy);
+		if (lengthSq == 0) {
+			return p.distance(a);
+		}
+
+		final double t = Math.max(0, Math.min(1, (((p.x - a.x) * dx) + ((p.y - a.y) * dy)) / lengthSq));
+		final double projX = a.x + (t * dx);
+		final double projY = a.y + (t * dy);
+		return Math.hypot(p.x - projX, p.y - projY);
+	}
+
+	private MousePathSimplifier() {
+		// Static helpers only
+	}
+}
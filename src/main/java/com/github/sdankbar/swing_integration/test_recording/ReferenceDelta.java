@@ -0,0 +1,242 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Reference image stored as the tiles that changed since an earlier reference,
+ * its base. Stored in a .tiles file in place of the .png file. The file is
+ * deflate compressed and holds a magic number, version, the base file name,
+ * the image size and the position, size and ARGB pixels of each tile.
+ */
+final class ReferenceDelta {
+
+	static final String EXTENSION = ".tiles";
+
+	private static final int MAGIC = 0x53495444;
+	private static final int VERSION = 1;
+
+	// Above this fraction of changed pixels a PNG keyframe is smaller and faster.
+	private static final double MAX_CHANGED_FRACTION = 0.5;
+
+	/**
+	 * @return The .tiles file that stores imageFile as a delta.
+	 */
+	static File deltaFile(final File imageFile) {
+		return new File(imageFile.getParentFile(), imageFile.getName().replace(".png", EXTENSION));
+	}
+
+	/**
+	 * @return The file holding imageFile's pixels, the .tiles file if there is
+	 *         one and no .png file, otherwise imageFile.
+	 */
+	static File sourceFile(final File imageFile) {
+		if (imageFile.exists()) {
+			return imageFile;
+		}
+		final File delta = deltaFile(imageFile);
+		return delta.exists() ? delta : imageFile;
+	}
+
+	/**
+	 * Writes image as a delta against base, or as a PNG keyframe if the images
+	 * differ in size or too much of the image changed. The other form of the
+	 * file is deleted.
+	 *
+	 * @param imageFile .png file the image is a reference for.
+	 * @param image     The image.
+	 * @param baseName  Name of the reference image, in the same directory, that
+	 *                  base was read from. May be null to force a keyframe.
+	 * @param base      The base image. May be null to force a keyframe.
+	 * @return True if a delta was written.
+	 */
+	static boolean writeReference(final File imageFile, final BufferedImage image, final String baseName,
+			final BufferedImage base) throws IOException {
+		Objects.requireNonNull(imageFile, "imageFile is null");
+		Objects.requireNonNull(image, "image is null");
+		final File delta = deltaFile(imageFile);
+		if ((base != null) && (baseName != null) && !baseName.equals(imageFile.getName())
+				&& (base.getWidth() == image.getWidth()) && (base.getHeight() == image.getHeight())) {
+			final List<ImageTiles.Tile> tiles = ImageTiles.changedTiles(base, image, ImageTiles.DEFAULT_TILE_SIZE);
+			long changed = 0;
+			for (final ImageTiles.Tile t : tiles) {
+				changed += t.pixels.length;
+			}
+			if (changed <= (MAX_CHANGED_FRACTION * image.getWidth() * image.getHeight())) {
+				new ReferenceDelta(baseName, image.getWidth(), image.getHeight(), tiles).write(delta);
+				Files.deleteIfExists(imageFile.toPath());
+				return true;
+			}
+		}
+
+		ImageIO.write(image, "PNG", imageFile);
+		Files.deleteIfExists(delta.toPath());
+		return false;
+	}
+
+	private static DataInputStream open(final File deltaFile) throws IOException {
+		return new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(new BufferedInputStream(new FileInputStream(deltaFile)))));
+	}
+
+	/**
+	 * Reads the header up to and including the base name.
+	 *
+	 * @return The base name.
+	 */
+	private static String readHeader(final DataInputStream in, final File deltaFile) throws IOException {
+		if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+			throw new IOException("Not a reference delta file: " + deltaFile.getAbsolutePath());
+		}
+		return in.readUTF();
+	}
+
+	/**
+	 * @return The base name of a delta, without reading its tiles.
+	 */
+	static String readBaseName(final File deltaFile) throws IOException {
+		try (DataInputStream in = open(deltaFile)) {
+			return readHeader(in, deltaFile);
+		}
+	}
+
+	static ReferenceDelta read(final File deltaFile) throws IOException {
+		try (DataInputStream in = open(deltaFile)) {
+			final String baseName = readHeader(in, deltaFile);
+			final int width = in.readInt();
+			final int height = in.readInt();
+			final int count = in.readInt();
+			final List<ImageTiles.Tile> tiles = new ArrayList<>(count);
+			final byte[] bytes = new byte[4 * ImageTiles.DEFAULT_TILE_SIZE * ImageTiles.DEFAULT_TILE_SIZE];
+			for (int i = 0; i < count; ++i) {
+				final int x = in.readInt();
+				final int y = in.readInt();
+				final int w = in.readInt();
+				final int h = in.readInt();
+				final int[] pixels = new int[w * h];
+				final byte[] tileBytes = bytes.length >= (4 * pixels.length) ? bytes : new byte[4 * pixels.length];
+				in.readFully(tileBytes, 0, 4 * pixels.length);
+				ByteBuffer.wrap(tileBytes, 0, 4 * pixels.length).asIntBuffer().get(pixels);
+				tiles.add(new ImageTiles.Tile(x, y, w, h, pixels));
+			}
+			return new ReferenceDelta(baseName, width, height, tiles);
+		}
+	}
+
+	/**
+	 * @return Names of the references in directory stored as deltas against
+	 *         baseName.
+	 */
+	static List<String> findDependents(final File directory, final String baseName) throws IOException {
+		final List<String> dependents = new ArrayList<>();
+		final File[] files = directory.listFiles((d, name) -> name.endsWith(EXTENSION));
+		if (files != null) {
+			for (final File f : files) {
+				if (readBaseName(f).equals(baseName)) {
+					dependents.add(f.getName().replace(EXTENSION, ".png"));
+				}
+			}
+		}
+		return dependents;
+	}
+
+	private final String baseName;
+	private final int width;
+	private final int height;
+	private final List<ImageTiles.Tile> tiles;
+
+	ReferenceDelta(final String baseName, final int width, final int height, final List<ImageTiles.Tile> tiles) {
+		this.baseName = Objects.requireNonNull(baseName, "baseName is null");
+		this.width = width;
+		this.height = height;
+		this.tiles = Objects.requireNonNull(tiles, "tiles is null");
+	}
+
+	String getBaseName() {
+		return baseName;
+	}
+
+	int getTileCount() {
+		return tiles.size();
+	}
+
+	/**
+	 * @return A new image, base with the changed tiles applied. base is not
+	 *         modified.
+	 * @throws IllegalStateException If base is null or not the size of this
+	 *                               image, for example because it was replaced
+	 *                               without rewriting this delta.
+	 */
+	BufferedImage apply(final BufferedImage base) {
+		if (base == null) {
+			throw new IllegalStateException("Base " + baseName + " could not be read");
+		} else if ((base.getWidth() != width) || (base.getHeight() != height)) {
+			throw new IllegalStateException("Base " + baseName + " is " + base.getWidth() + "x" + base.getHeight()
+					+ ", expected " + width + "x" + height);
+		}
+		return ImageTiles.apply(ImageTiles.copy(base), width, height, tiles);
+	}
+
+	void write(final File deltaFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(deltaFile))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(baseName);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(tiles.size());
+			ByteBuffer bytes = ByteBuffer.allocate(4 * ImageTiles.DEFAULT_TILE_SIZE * ImageTiles.DEFAULT_TILE_SIZE);
+			for (final ImageTiles.Tile t : tiles) {
+				out.writeInt(t.x);
+				out.writeInt(t.y);
+				out.writeInt(t.width);
+				out.writeInt(t.height);
+				if (bytes.capacity() < (4 * t.pixels.length)) {
+					bytes = ByteBuffer.allocate(4 * t.pixels.length);
+				}
+				bytes.clear();
+				bytes.asIntBuffer().put(t.pixels);
+				out.write(bytes.array(), 0, 4 * t.pixels.length);
+			}
+		}
+	}
+}
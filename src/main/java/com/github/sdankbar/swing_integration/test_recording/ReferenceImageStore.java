@@ -0,0 +1,289 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Decoded reference images, keyed by file. Images can be prefetched on a
+ * background thread so they are already decoded when a comparison needs them.
+ * An image is decoded again if its file changed since it was stored. Images
+ * stored as a ReferenceDelta are reconstructed from their base image, which is
+ * usually already decoded since it is the previous checkpoint.
+ */
+final class ReferenceImageStore {
+
+	private static final class Entry {
+		private final FutureTask<BufferedImage> image;
+		private final long lastModified;
+		private final long length;
+		private volatile long lastUsed;
+
+		Entry(final FutureTask<BufferedImage> image, final File imageFile) {
+			this.image = image;
+			final File source = ReferenceDelta.sourceFile(imageFile);
+			lastModified = source.lastModified();
+			length = source.length();
+			lastUsed = USE_COUNTER.incrementAndGet();
+		}
+
+		boolean isCurrent(final File imageFile) {
+			final File source = ReferenceDelta.sourceFile(imageFile);
+			return (source.lastModified() == lastModified) && (source.length() == length);
+		}
+
+		long getBytes() {
+			if (!image.isDone()) {
+				return 0;
+			}
+			try {
+				final BufferedImage i = image.get();
+				return i == null ? 0 : 4L * i.getWidth() * i.getHeight();
+			} catch (final InterruptedException | ExecutionException e) {
+				return 0;
+			}
+		}
+	}
+
+	private static final AtomicLong USE_COUNTER = new AtomicLong();
+	private static final ExecutorService PREFETCH_THREAD = Executors.newSingleThreadExecutor(r -> {
+		final Thread t = new Thread(r, "TestRunner-prefetch");
+		t.setDaemon(true);
+		return t;
+	});
+	private static final ConcurrentHashMap<File, Entry> SHARED_IMAGES = new ConcurrentHashMap<>();
+
+	private static BufferedImage toIntARGB(final BufferedImage image) {
+		if ((image == null) || (image.getType() == BufferedImage.TYPE_INT_ARGB)) {
+			return image;
+		}
+
+		final BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(),
+				BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = converted.createGraphics();
+		// Copy pixels as they are, SrcOver would blend translucent ones.
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return converted;
+	}
+
+	static BufferedImage readImage(final File imageFile) {
+		try {
+			return toIntARGB(ImageIO.read(imageFile));
+		} catch (final IOException e) {
+			throw new RuntimeException("Failed reading image file:" + imageFile.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @return A store whose images are shared with every other shared store in
+	 *         this JVM, so a long running JVM only decodes each reference once.
+	 *         Hit, stall and miss counts are still per store.
+	 */
+	static ReferenceImageStore shared() {
+		return new ReferenceImageStore(SHARED_IMAGES);
+	}
+
+	/**
+	 * Discards the least recently used shared images until the decoded images
+	 * take at most maxBytes.
+	 */
+	static void trimShared(final long maxBytes) {
+		final List<Map.Entry<File, Entry>> entries = new ArrayList<>(SHARED_IMAGES.entrySet());
+		entries.sort(Comparator.comparingLong(e -> -e.getValue().lastUsed));
+		long total = 0;
+		for (final Map.Entry<File, Entry> e : entries) {
+			total += e.getValue().getBytes();
+			if (total > maxBytes) {
+				SHARED_IMAGES.remove(e.getKey(), e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return Bytes taken by the decoded shared images.
+	 */
+	static long getSharedBytes() {
+		long total = 0;
+		for (final Entry e : SHARED_IMAGES.values()) {
+			total += e.getBytes();
+		}
+		return total;
+	}
+
+	static void clearShared() {
+		SHARED_IMAGES.clear();
+	}
+
+	private final ConcurrentHashMap<File, Entry> images;
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger stalls = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	ReferenceImageStore() {
+		this(new ConcurrentHashMap<>());
+	}
+
+	private ReferenceImageStore(final ConcurrentHashMap<File, Entry> images) {
+		this.images = images;
+	}
+
+	/**
+	 * Starts decoding an image on the prefetch thread if it is not already
+	 * stored. Images are decoded in the order they are prefetched.
+	 */
+	void prefetch(final File imageFile) {
+		Objects.requireNonNull(imageFile, "imageFile is null");
+		images.compute(imageFile, (f, e) -> {
+			if ((e != null) && e.isCurrent(f)) {
+				return e;
+			}
+			final FutureTask<BufferedImage> task = new FutureTask<>(() -> load(f));
+			PREFETCH_THREAD.execute(task);
+			return new Entry(task, f);
+		});
+	}
+
+	/**
+	 * Returns the decoded image, waiting for it if it is still being prefetched
+	 * and decoding it on the calling thread if it was never prefetched.
+	 */
+	BufferedImage get(final File imageFile) {
+		Objects.requireNonNull(imageFile, "imageFile is null");
+		return get(imageFile, true);
+	}
+
+	private BufferedImage get(final File imageFile, final boolean count) {
+		Entry entry = images.get(imageFile);
+		if ((entry != null) && !entry.isCurrent(imageFile)) {
+			images.remove(imageFile, entry);
+			entry = null;
+		}
+
+		if (entry == null) {
+			final FutureTask<BufferedImage> task = new FutureTask<>(() -> load(imageFile));
+			final Entry created = new Entry(task, imageFile);
+			entry = images.putIfAbsent(imageFile, created);
+			if (entry == null) {
+				if (count) {
+					misses.incrementAndGet();
+				}
+				task.run();
+				entry = created;
+			}
+		} else if (!count) {
+			// Base of a delta, not counted.
+		} else if (entry.image.isDone()) {
+			hits.incrementAndGet();
+		} else {
+			stalls.incrementAndGet();
+		}
+		entry.lastUsed = USE_COUNTER.incrementAndGet();
+
+		// Decode here rather than wait if the prefetch thread has not started it,
+		// which also lets the prefetch thread load the base of a delta queued
+		// after it. Does nothing if the image is already being decoded.
+		entry.image.run();
+		try {
+			return entry.image.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted reading image file:" + imageFile.getAbsolutePath(), e);
+		} catch (final ExecutionException e) {
+			images.remove(imageFile, entry);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	private BufferedImage load(final File imageFile) {
+		final File source = ReferenceDelta.sourceFile(imageFile);
+		if (source == imageFile) {
+			return readImage(imageFile);
+		}
+
+		try {
+			final ReferenceDelta delta = ReferenceDelta.read(source);
+			return delta.apply(get(new File(imageFile.getParentFile(), delta.getBaseName()), false));
+		} catch (final IOException e) {
+			throw new RuntimeException("Failed reading image file:" + source.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Discards every stored image except those in keep. Does nothing for a shared
+	 * store, which is bounded by trimShared() instead.
+	 */
+	void retainOnly(final Collection<File> keep) {
+		if (images != SHARED_IMAGES) {
+			images.keySet().retainAll(keep);
+		}
+	}
+
+	/**
+	 * Discards a stored image, for example after it is recaptured.
+	 */
+	void invalidate(final File imageFile) {
+		images.remove(imageFile);
+	}
+
+	void clear() {
+		images.clear();
+	}
+
+	int getHitCount() {
+		return hits.get();
+	}
+
+	int getStallCount() {
+		return stalls.get();
+	}
+
+	int getMissCount() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures how quickly the event dispatch thread responds to input. Installs an
+ * EventQueue that timestamps input events and detects long running events, and
+ * a RepaintManager that timestamps completed repaints.
+ */
+final class ResponsivenessMonitor {
+
+	private static class MonitoringEventQueue extends EventQueue {
+		private final ResponsivenessMonitor monitor;
+
+		MonitoringEventQueue(final ResponsivenessMonitor monitor) {
+			this.monitor = monitor;
+		}
+
+		@Override
+		protected void dispatchEvent(final AWTEvent event) {
+			final long start = System.nanoTime();
+			if ((event instanceof InputEvent) && monitor.firstInputNanos.compareAndSet(0, start)) {
+				// Posted before the input is handled, the same as TestRecorder does, so
+				// both measure the same interval.
+				SwingUtilities.invokeLater(() -> monitor.handledNanos.set(System.nanoTime()));
+			}
+			try {
+				super.dispatchEvent(event);
+			} finally {
+				final long elapsed = System.nanoTime() - start;
+				if (elapsed > monitor.stallThresholdNanos) {
+					monitor.stallCount.incrementAndGet();
+					monitor.longestStallNanos.accumulateAndGet(elapsed, Math::max);
+				}
+			}
+		}
+	}
+
+	private static class MonitoringRepaintManager extends RepaintManager {
+		private final ResponsivenessMonitor monitor;
+
+		MonitoringRepaintManager(final ResponsivenessMonitor monitor) {
+			this.monitor = monitor;
+		}
+
+		@Override
+		public void paintDirtyRegions() {
+			super.paintDirtyRegions();
+			monitor.lastPaintNanos.set(System.nanoTime());
+		}
+	}
+
+	private static ResponsivenessMonitor INSTANCE = null;
+
+	/**
+	 * Installs the monitor, if not already installed. The RepaintManager hook is
+	 * only installed if the application has not replaced the default
+	 * RepaintManager.
+	 */
+	static synchronized ResponsivenessMonitor install() {
+		if (INSTANCE == null) {
+			final ResponsivenessMonitor m = new ResponsivenessMonitor();
+			final Runnable installer = () -> {
+				Toolkit.getDefaultToolkit().getSystemEventQueue().push(m.queue);
+				final RepaintManager current = RepaintManager.currentManager(null);
+				if (current.getClass() == RepaintManager.class) {
+					RepaintManager.setCurrentManager(new MonitoringRepaintManager(m));
+					m.repaintHooked = true;
+				}
+			};
+			if (SwingUtilities.isEventDispatchThread()) {
+				installer.run();
+			} else {
+				try {
+					SwingUtilities.invokeAndWait(installer);
+				} catch (InvocationTargetException | InterruptedException e) {
+					throw new RuntimeException("Failed installing responsiveness monitor", e);
+				}
+			}
+			INSTANCE = m;
+		}
+		return INSTANCE;
+	}
+
+	private final MonitoringEventQueue queue = new MonitoringEventQueue(this);
+	private final AtomicLong firstInputNanos = new AtomicLong();
+	private final AtomicLong handledNanos = new AtomicLong();
+	private final AtomicLong lastPaintNanos = new AtomicLong();
+	private final AtomicLong stallCount = new AtomicLong();
+	private final AtomicLong longestStallNanos = new AtomicLong();
+	private volatile long stallThresholdNanos = Duration.ofMillis(100).toNanos();
+	private volatile boolean repaintHooked = false;
+
+	private ResponsivenessMonitor() {
+		// Use install()
+	}
+
+	void setStallThreshold(final Duration threshold) {
+		stallThresholdNanos = threshold.toNanos();
+	}
+
+	/**
+	 * Clears the stall counters. The monitor lives as long as the JVM, so each
+	 * runner that enables it starts from zero.
+	 */
+	void resetStalls() {
+		stallCount.set(0);
+		longestStallNanos.set(0);
+	}
+
+	long getStallCount() {
+		return stallCount.get();
+	}
+
+	Duration getLongestStall() {
+		return Duration.ofNanos(longestStallNanos.get());
+	}
+
+	/**
+	 * Call immediately before dispatching an input.
+	 *
+	 * @return Start time of the measurement.
+	 */
+	long mark() {
+		firstInputNanos.set(0);
+		handledNanos.set(0);
+		return System.nanoTime();
+	}
+
+	/**
+	 * Waits for the event dispatch thread to process the events queued so far
+	 * and returns how long the steps of handling the input took. Waits a second
+	 * time if the input was dispatched, so that its handling is measured, but
+	 * never waits for the event queue to empty, since animations and timers can
+	 * keep it busy indefinitely.
+	 */
+	StepLatency measure(final long start, final String checkpoint, final int step) {
+		sync();
+		if (firstInputNanos.get() > start) {
+			sync();
+		}
+		final long idle = System.nanoTime();
+
+		final long input = firstInputNanos.get();
+		final long handled = handledNanos.get();
+		final long paint = lastPaintNanos.get();
+		return new StepLatency(checkpoint, step, input > start ? Duration.ofNanos(input - start) : null,
+				(input > start) && (handled > input) ? Duration.ofNanos(handled - input) : null,
+				Duration.ofNanos(idle - start), repaintHooked && (paint > start) ? Duration.ofNanos(paint - start) : null);
+	}
+
+	private static void sync() {
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				// Empty Implementation
+			});
+		} catch (InvocationTargetException | InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.time.Duration;
+
+/**
+ * One timed operation performed by a TestRunner.
+ */
+public final class RunnerEvent {
+
+	public enum Type {
+		CAPTURE, REFERENCE_LOAD, COMPARISON, DELTA_WRITE, ROBOT_ACTION, EDT_SYNC, DELAY, FLIGHT_RECORDER
+	}
+
+	private final Type type;
+	private final String checkpoint;
+	private final String name;
+	private final long durationNanos;
+	private final int width;
+	private final int height;
+	private final double peakSignalToNoiseRatio;
+	private final int attempt;
+
+	RunnerEvent(final Type type, final String checkpoint, final String name, final long durationNanos,
+			final int width, final int height, final double peakSignalToNoiseRatio, final int attempt) {
+		this.type = type;
+		this.checkpoint = checkpoint;
+		this.name = name;
+		this.durationNanos = durationNanos;
+		this.width = width;
+		this.height = height;
+		this.peakSignalToNoiseRatio = peakSignalToNoiseRatio;
+		this.attempt = attempt;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return Checkpoint the operation belongs to. Empty for operations outside
+	 *         of a checkpoint.
+	 */
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * @return Reference image file name or robot action name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public Duration getDuration() {
+		return Duration.ofNanos(durationNanos);
+	}
+
+	/**
+	 * @return Width of the image involved, or 0.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return Height of the image involved, or 0.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return Peak signal to noise ratio of a COMPARISON, otherwise NaN.
+	 */
+	public double getPeakSignalToNoiseRatio() {
+		return peakSignalToNoiseRatio;
+	}
+
+	/**
+	 * @return Attempt number, starting at 1, of a CAPTURE or COMPARISON that may
+	 *         be retried, otherwise 0.
+	 */
+	public int getAttempt() {
+		return attempt;
+	}
+
+	@Override
+	public String toString() {
+		return "RunnerEvent [type=" + type + ", checkpoint=" + checkpoint + ", name=" + name + ", duration="
+				+ getDuration() + ", width=" + width + ", height=" + height + ", psnr=" + peakSignalToNoiseRatio
+				+ ", attempt=" + attempt + "]";
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RunnerListener that totals time per operation type and per checkpoint and
+ * writes the totals as JSON.
+ */
+public class RunnerMetrics implements RunnerListener {
+
+	private static class Totals {
+		private long count = 0;
+		private long totalNanos = 0;
+		private long maxNanos = 0;
+
+		void add(final long nanos) {
+			++count;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+	}
+
+	private static class CheckpointTotals {
+		private final Map<RunnerEvent.Type, Long> nanosByType = new EnumMap<>(RunnerEvent.Type.class);
+		private long totalNanos = 0;
+		private int attempts = 0;
+		private double peakSignalToNoiseRatio = Double.NaN;
+	}
+
+	private static String quote(final String s) {
+		final StringBuilder b = new StringBuilder("\"");
+		for (final char c : s.toCharArray()) {
+			if ((c == '"') || (c == '\\')) {
+				b.append('\\').append(c);
+			} else if (c < ' ') {
+				b.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				b.append(c);
+			}
+		}
+		return b.append('"').toString();
+	}
+
+	private static String millis(final long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	private final Map<RunnerEvent.Type, Totals> byType = new EnumMap<>(RunnerEvent.Type.class);
+	private final Map<String, CheckpointTotals> byCheckpoint = new LinkedHashMap<>();
+
+	@Override
+	public synchronized void onEvent(final RunnerEvent event) {
+		final long nanos = event.getDuration().toNanos();
+		byType.computeIfAbsent(event.getType(), t -> new Totals()).add(nanos);
+
+		final CheckpointTotals c = byCheckpoint.computeIfAbsent(event.getCheckpoint(), n -> new CheckpointTotals());
+		c.totalNanos += nanos;
+		c.nanosByType.merge(event.getType(), nanos, Long::sum);
+		if (event.getType() == RunnerEvent.Type.COMPARISON) {
+			c.attempts = Math.max(c.attempts, event.getAttempt());
+			c.peakSignalToNoiseRatio = event.getPeakSignalToNoiseRatio();
+		}
+	}
+
+	/**
+	 * @return Summary of all events received so far, as JSON. Checkpoints are
+	 *         ordered by total time, longest first.
+	 */
+	public synchronized String toJson() {
+		final StringBuilder b = new StringBuilder("{\n  \"types\": {");
+		boolean first = true;
+		for (final Map.Entry<RunnerEvent.Type, Totals> e : byType.entrySet()) {
+			b.append(first ? "\n" : ",\n");
+			first = false;
+			b.append("    ").append(quote(e.getKey().name())).append(": {\"count\": ").append(e.getValue().count)
+					.append(", \"totalMillis\": ").append(millis(e.getValue().totalNanos)).append(", \"maxMillis\": ")
+					.append(millis(e.getValue().maxNanos)).append('}');
+		}
+		b.append("\n  },\n  \"checkpoints\": [");
+
+		final List<Map.Entry<String, CheckpointTotals>> checkpoints = new ArrayList<>(byCheckpoint.entrySet());
+		checkpoints.sort((a, c) -> Long.compare(c.getValue().totalNanos, a.getValue().totalNanos));
+		first = true;
+		for (final Map.Entry<String, CheckpointTotals> e : checkpoints) {
+			final CheckpointTotals c = e.getValue();
+			b.append(first ? "\n" : ",\n");
+			first = false;
+			b.append("    {\"name\": ").append(quote(e.getKey())).append(", \"totalMillis\": ")
+					.append(millis(c.totalNanos));
+			for (final Map.Entry<RunnerEvent.Type, Long> t : c.nanosByType.entrySet()) {
+				b.append(", ").append(quote(t.getKey().name())).append(": ").append(millis(t.getValue()));
+			}
+			b.append(", \"attempts\": ").append(c.attempts);
+			if (!Double.isNaN(c.peakSignalToNoiseRatio)) {
+				b.append(", \"psnr\": ").append(String.format(Locale.ROOT, "%.3f", c.peakSignalToNoiseRatio));
+			}
+			b.append('}');
+		}
+		b.append("\n  ]\n}\n");
+		return b.toString();
+	}
+
+	/**
+	 * Writes toJson() to a file.
+	 *
+	 * @param file Output file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeJson(final File file) throws IOException {
+		Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+	}
+}
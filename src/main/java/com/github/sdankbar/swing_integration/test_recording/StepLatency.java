@@ -0,0 +1,114 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.time.Duration;
+
+/**
+ * How long the application took to respond to one replayed input.
+ */
+public final class StepLatency {
+
+	private final String checkpoint;
+	private final int step;
+	private final Duration delivery;
+	private final Duration handling;
+	private final Duration idle;
+	private final Duration repaint;
+
+	StepLatency(final String checkpoint, final int step, final Duration delivery, final Duration handling,
+			final Duration idle, final Duration repaint) {
+		this.checkpoint = checkpoint;
+		this.step = step;
+		this.delivery = delivery;
+		this.handling = handling;
+		this.idle = idle;
+		this.repaint = repaint;
+	}
+
+	/**
+	 * @return Checkpoint the step leads up to. Empty for steps outside of a
+	 *         checkpoint and "end" for steps after the last checkpoint.
+	 */
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * @return Index of the step within its checkpoint.
+	 */
+	public int getStep() {
+		return step;
+	}
+
+	/**
+	 * @return Time from the robot dispatching the input until the event dispatch
+	 *         thread received it, or null if no input event was dispatched.
+	 */
+	public Duration getDeliveryTime() {
+		return delivery;
+	}
+
+	/**
+	 * @return Time from the robot dispatching the input until the event dispatch
+	 *         thread was idle.
+	 */
+	public Duration getIdleTime() {
+		return idle;
+	}
+
+	/**
+	 * @return Time from the robot dispatching the input until the last repaint
+	 *         completed, or null if nothing was repainted.
+	 */
+	public Duration getRepaintTime() {
+		return repaint;
+	}
+
+	/**
+	 * @return The longer of the idle and repaint times.
+	 */
+	public Duration getResponseTime() {
+		if ((repaint != null) && (repaint.compareTo(idle) > 0)) {
+			return repaint;
+		} else {
+			return idle;
+		}
+	}
+
+	/**
+	 * @return Time from the event dispatch thread starting to dispatch the input
+	 *         until the events queued before the input finished, including the
+	 *         input's handlers. Measured the same way while recording. Null if the
+	 *         input was not dispatched in time to be measured.
+	 */
+	Duration getHandlingTime() {
+		return handling;
+	}
+
+	@Override
+	public String toString() {
+		return "StepLatency [checkpoint=" + checkpoint + ", step=" + step + ", delivery=" + delivery + ", handling=" + handling + ", idle="
+				+ idle + ", repaint=" + repaint + "]";
+	}
+}
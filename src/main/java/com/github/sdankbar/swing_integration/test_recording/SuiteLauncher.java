@@ -0,0 +1,516 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs test classes in parallel across several worker JVMs, each on its own
+ * Xvfb display so that their robots, focus and mouse pointers do not interfere.
+ * Classes are handed out longest first using the durations recorded by earlier
+ * runs, and each worker JVM runs many classes so JVM and application startup
+ * are paid once per worker. Results from all workers are merged into one
+ * report, and delta images are collected into the report's deltas directory.
+ *
+ * Usage: SuiteLauncher [--workers N] [--durations file] [--report dir]
+ * [--display-base N] [--screen WxHxD] [--no-xvfb] [--class-timeout seconds]
+ * [--jvm-arg arg]... class...
+ */
+public final class SuiteLauncher {
+
+	static final class ClassResult {
+		final String className;
+		final int worker;
+		int run = 0;
+		int failures = 0;
+		int ignored = 0;
+		long millis = 0;
+		// Worker exited, timed out or broke the protocol, so millis is not the
+		// class's duration.
+		boolean crashed = false;
+		final List<String> messages = new ArrayList<>();
+
+		ClassResult(final String className, final int worker) {
+			this.className = className;
+			this.worker = worker;
+		}
+	}
+
+	private class Worker {
+		private final int index;
+		private final int display;
+		private Process xvfb = null;
+		private Process jvm = null;
+		private BufferedWriter input = null;
+		private BufferedReader output = null;
+
+		Worker(final int index) {
+			this.index = index;
+			display = displayBase + index;
+		}
+
+		void start() throws IOException, InterruptedException {
+			if (useXvfb && (xvfb == null)) {
+				if (getDisplaySocket().exists()) {
+					throw new IllegalStateException("Display :" + display
+							+ " is already in use or has a stale socket, choose another --display-base");
+				}
+				xvfb = new ProcessBuilder("Xvfb", ":" + display, "-screen", "0", screen, "-nolisten", "tcp")
+						.redirectErrorStream(true).redirectOutput(new File(reportDir, "xvfb-" + index + ".log"))
+						.start();
+				waitForDisplay();
+			}
+
+			final List<String> command = new ArrayList<>();
+			command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+			command.addAll(jvmArguments);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(SuiteWorker.class.getName());
+
+			final ProcessBuilder builder = new ProcessBuilder(command);
+			if (useXvfb) {
+				builder.environment().put("DISPLAY", ":" + display);
+			}
+			builder.environment().put("DELTA_REPORT_DIR", new File(reportDir, "deltas").getAbsolutePath());
+			builder.redirectError(ProcessBuilder.Redirect.appendTo(new File(reportDir, "worker-" + index + ".log")));
+			jvm = builder.start();
+			input = new BufferedWriter(new OutputStreamWriter(jvm.getOutputStream(), StandardCharsets.UTF_8));
+			output = new BufferedReader(new InputStreamReader(jvm.getInputStream(), StandardCharsets.UTF_8));
+		}
+
+		private File getDisplaySocket() {
+			return new File("/tmp/.X11-unix/X" + display);
+		}
+
+		private void waitForDisplay() throws InterruptedException {
+			final File socket = getDisplaySocket();
+			final long end = System.currentTimeMillis() + XVFB_START_TIMEOUT_MS;
+			while (!socket.exists() || !xvfb.isAlive()) {
+				if (!xvfb.isAlive() || (System.currentTimeMillis() > end)) {
+					throw new IllegalStateException("Xvfb failed to start on display :" + display
+							+ ", see xvfb-" + index + ".log");
+				}
+				Thread.sleep(50);
+			}
+		}
+
+		ClassResult run(final String className) throws IOException, InterruptedException {
+			if (!jvm.isAlive()) {
+				// Exited while idle, or the watchdog fired just as the last class finished.
+				stopJvm();
+				start();
+			}
+			final ClassResult result = new ClassResult(className, index);
+			final Process running = jvm;
+			final AtomicBoolean timedOut = new AtomicBoolean();
+			String malformed = null;
+			final ScheduledFuture<?> watchdog = WATCHDOG.schedule(() -> {
+				timedOut.set(true);
+				running.destroyForcibly();
+			}, classTimeout.toMillis(), TimeUnit.MILLISECONDS);
+			try {
+				input.write(className + "\n");
+				input.flush();
+
+				String line;
+				while ((line = output.readLine()) != null) {
+					if (readLine(line, result)) {
+						return result;
+					}
+				}
+			} catch (final IOException e) {
+				// Worker died, handled below.
+			} catch (final IllegalArgumentException e) {
+				// The worker's state is unknown, so it is restarted below.
+				malformed = e.getMessage();
+			} finally {
+				watchdog.cancel(false);
+			}
+
+			// The worker exited before finishing, for example a test called System.exit().
+			result.failures = Math.max(1, result.failures);
+			result.crashed = true;
+			if (malformed != null) {
+				result.messages.add(className + ": worker " + index + " " + malformed + ", see worker-" + index
+						+ ".log");
+			} else if (timedOut.get()) {
+				result.messages.add(className + ": timed out after " + classTimeout.getSeconds()
+						+ "s, worker " + index + " killed, see worker-" + index + ".log");
+			} else {
+				result.messages.add(className + ": worker " + index + " exited, see worker-" + index + ".log");
+			}
+			stopJvm();
+			start();
+			return result;
+		}
+
+		private void stopJvm() throws InterruptedException {
+			if (jvm != null) {
+				try {
+					input.close();
+				} catch (final IOException e) {
+					// Already closed
+				}
+				if (!jvm.waitFor(WORKER_STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+					jvm.destroyForcibly();
+				}
+				jvm = null;
+			}
+		}
+
+		void stop() throws InterruptedException {
+			stopJvm();
+			if (xvfb != null) {
+				xvfb.destroy();
+				xvfb = null;
+			}
+		}
+	}
+
+	private static final long XVFB_START_TIMEOUT_MS = 10000;
+	private static final long WORKER_STOP_TIMEOUT_MS = 10000;
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+		final Thread t = new Thread(r, "SuiteLauncher-watchdog");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Adds a line a worker wrote for a class to its result.
+	 *
+	 * @return True if the line is the RESULT line that ends the class.
+	 * @throws IllegalArgumentException If a RESULT line's counts are not numbers.
+	 */
+	static boolean readLine(final String line, final ClassResult result) {
+		final String[] fields = line.split("\t", -1);
+		if (SuiteWorker.FAILURE.equals(fields[0]) && (fields.length >= 4)) {
+			result.messages.add(SuiteWorker.unescape(fields[2]) + ": " + SuiteWorker.unescape(fields[3]));
+		} else if (SuiteWorker.RESULT.equals(fields[0]) && (fields.length >= 6)) {
+			try {
+				result.run = Integer.parseInt(fields[2]);
+				result.failures = Integer.parseInt(fields[3]);
+				result.ignored = Integer.parseInt(fields[4]);
+				result.millis = Long.parseLong(fields[5]);
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("sent a malformed result: " + SuiteWorker.escape(line), e);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Orders classes longest first by their recorded duration. Classes without a
+	 * recorded duration go first of all, since they could be anything, as do
+	 * classes whose recorded duration is not a number.
+	 */
+	static List<String> orderLongestFirst(final List<String> classNames, final Properties durations) {
+		final Map<String, Long> millis = new HashMap<>();
+		for (final String c : classNames) {
+			final String d = durations.getProperty(c);
+			long m = Long.MAX_VALUE;
+			if (d != null) {
+				try {
+					m = Long.parseLong(d.trim());
+				} catch (final NumberFormatException e) {
+					System.err.println("Ignoring invalid duration of " + c + ": " + d);
+				}
+			}
+			millis.put(c, m);
+		}
+
+		final List<String> ordered = new ArrayList<>(classNames);
+		ordered.sort(Comparator.comparingLong((String c) -> millis.get(c)).reversed());
+		return ordered;
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		final List<String> classes = new ArrayList<>();
+		int workers = Runtime.getRuntime().availableProcessors();
+		final List<String> jvmArgs = new ArrayList<>();
+		File durations = new File("test-durations.properties");
+		File report = new File("suite-report");
+		int displayBase = 90;
+		String screen = "1920x1080x24";
+		boolean xvfb = true;
+		Duration classTimeout = null;
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+				case "--workers":
+					workers = Integer.parseInt(args[++i]);
+					break;
+				case "--durations":
+					durations = new File(args[++i]);
+					break;
+				case "--report":
+					report = new File(args[++i]);
+					break;
+				case "--display-base":
+					displayBase = Integer.parseInt(args[++i]);
+					break;
+				case "--screen":
+					screen = args[++i];
+					break;
+				case "--class-timeout":
+					classTimeout = Duration.ofSeconds(Long.parseLong(args[++i]));
+					break;
+				case "--no-xvfb":
+					xvfb = false;
+					break;
+				case "--jvm-arg":
+					jvmArgs.add(args[++i]);
+					break;
+				default:
+					classes.add(args[i]);
+					break;
+			}
+		}
+
+		final SuiteLauncher launcher = new SuiteLauncher(workers, report);
+		launcher.setDurationsFile(durations);
+		launcher.setDisplays(displayBase, screen, xvfb);
+		if (classTimeout != null) {
+			launcher.setClassTimeout(classTimeout);
+		}
+		for (final String a : jvmArgs) {
+			launcher.addJvmArgument(a);
+		}
+		System.exit(launcher.run(classes) ? 0 : 1);
+	}
+
+	private final int workerCount;
+	private final File reportDir;
+	private File durationsFile = new File("test-durations.properties");
+	private int displayBase = 90;
+	private String screen = "1920x1080x24";
+	private boolean useXvfb = true;
+	private Duration classTimeout = Duration.ofMinutes(10);
+	private final List<String> jvmArguments = new ArrayList<>();
+
+	/**
+	 * @param workerCount Number of worker JVMs and displays.
+	 * @param reportDir   Directory for the report, delta images and worker logs.
+	 */
+	public SuiteLauncher(final int workerCount, final File reportDir) {
+		if (workerCount <= 0) {
+			throw new IllegalArgumentException("workerCount must be positive");
+		}
+		this.workerCount = workerCount;
+		this.reportDir = Objects.requireNonNull(reportDir, "reportDir is null");
+	}
+
+	/**
+	 * @param file Properties file mapping test class names to their duration in
+	 *             milliseconds. Read to order classes and updated after the run.
+	 */
+	public void setDurationsFile(final File file) {
+		durationsFile = Objects.requireNonNull(file, "file is null");
+	}
+
+	/**
+	 * @param base    Display number of the first worker. Worker i uses display
+	 *                base + i.
+	 * @param screen  Xvfb screen geometry, WIDTHxHEIGHTxDEPTH.
+	 * @param useXvfb If false, workers use the current display instead of
+	 *                starting Xvfb.
+	 */
+	public void setDisplays(final int base, final String screen, final boolean useXvfb) {
+		displayBase = base;
+		this.screen = Objects.requireNonNull(screen, "screen is null");
+		this.useXvfb = useXvfb;
+	}
+
+	/**
+	 * @param timeout Longest a single test class may run before its worker JVM is
+	 *                killed and the class reported as failed. Defaults to 10
+	 *                minutes.
+	 */
+	public void setClassTimeout(final Duration timeout) {
+		classTimeout = Objects.requireNonNull(timeout, "timeout is null");
+	}
+
+	public void addJvmArgument(final String argument) {
+		jvmArguments.add(Objects.requireNonNull(argument, "argument is null"));
+	}
+
+	private Properties loadDurations() throws IOException {
+		final Properties p = new Properties();
+		if (durationsFile.exists()) {
+			try (InputStream in = new FileInputStream(durationsFile)) {
+				p.load(in);
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Runs every class and writes the merged report.
+	 *
+	 * @param classNames Test class names.
+	 * @return True if every test passed.
+	 */
+	public boolean run(final List<String> classNames) throws IOException, InterruptedException {
+		// Delta images from an earlier run would otherwise be reported as this run's.
+		final File deltaDir = new File(reportDir, "deltas");
+		final File[] oldDeltas = deltaDir.listFiles();
+		if (oldDeltas != null) {
+			for (final File f : oldDeltas) {
+				Files.delete(f.toPath());
+			}
+		}
+		deltaDir.mkdirs();
+		final Properties durations = loadDurations();
+
+		final List<String> ordered = orderLongestFirst(classNames, durations);
+		final Queue<String> pending = new ConcurrentLinkedQueue<>(ordered);
+
+		final long start = System.nanoTime();
+		final List<ClassResult> results = Collections.synchronizedList(new ArrayList<>());
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < Math.min(workerCount, ordered.size()); ++i) {
+			final Worker worker = new Worker(i);
+			final Thread t = new Thread(() -> {
+				try {
+					worker.start();
+					String className;
+					while ((className = pending.poll()) != null) {
+						results.add(worker.run(className));
+					}
+				} catch (IOException | InterruptedException | RuntimeException e) {
+					errors.add(e);
+				} finally {
+					try {
+						worker.stop();
+					} catch (final InterruptedException e) {
+						errors.add(e);
+					}
+				}
+			}, "SuiteLauncher-worker-" + i);
+			t.start();
+			threads.add(t);
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+		final long wallMillis = (System.nanoTime() - start) / 1000000;
+
+		for (final String c : pending) {
+			final ClassResult notRun = new ClassResult(c, -1);
+			notRun.failures = 1;
+			notRun.messages.add(c + ": not run");
+			results.add(notRun);
+		}
+
+		for (final ClassResult r : results) {
+			// A crash or timeout is not the class's real duration, keep the old one.
+			if ((r.worker >= 0) && !r.crashed) {
+				durations.setProperty(r.className, Long.toString(r.millis));
+			}
+		}
+		try (OutputStream out = new FileOutputStream(durationsFile)) {
+			durations.store(out, "Test class durations in milliseconds, used by SuiteLauncher");
+		}
+
+		return writeReport(results, errors, wallMillis);
+	}
+
+	private boolean writeReport(final List<ClassResult> results, final List<Throwable> errors,
+			final long wallMillis) throws IOException {
+		results.sort(Comparator.comparingLong((ClassResult r) -> r.millis).reversed());
+		int run = 0;
+		int failures = 0;
+		int ignored = 0;
+		for (final ClassResult r : results) {
+			run += r.run;
+			failures += r.failures;
+			ignored += r.ignored;
+		}
+
+		final File deltaDir = new File(reportDir, "deltas");
+		final String[] deltas = deltaDir.list();
+		if (deltas != null) {
+			Arrays.sort(deltas);
+		}
+
+		final File reportFile = new File(reportDir, "report.txt");
+		try (BufferedWriter w = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8))) {
+			w.write("Classes: " + results.size() + ", tests: " + run + ", failures: " + failures + ", ignored: "
+					+ ignored + ", workers: " + workerCount + ", wall time: " + wallMillis + "ms\n");
+			w.write("\nClasses, longest first:\n");
+			for (final ClassResult r : results) {
+				w.write("  " + r.className + " worker=" + r.worker + " " + r.millis + "ms tests=" + r.run
+						+ " failures=" + r.failures + " ignored=" + r.ignored + "\n");
+			}
+			w.write("\nFailures:\n");
+			for (final ClassResult r : results) {
+				for (final String m : r.messages) {
+					w.write("  " + r.className + " " + m.replace("\n", "\n    ") + "\n");
+				}
+			}
+			for (final Throwable e : errors) {
+				w.write("  Launcher error: " + e + "\n");
+			}
+			w.write("\nDelta images (" + deltaDir.getPath() + "):\n");
+			if (deltas != null) {
+				for (final String d : deltas) {
+					w.write("  " + d + "\n");
+				}
+			}
+		}
+
+		System.out.println("Ran " + run + " tests in " + results.size() + " classes with " + failures
+				+ " failures in " + wallMillis + "ms. See " + reportFile.getPath());
+		return (failures == 0) && errors.isEmpty();
+	}
+}
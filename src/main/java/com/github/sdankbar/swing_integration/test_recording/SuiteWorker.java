@@ -0,0 +1,139 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+/**
+ * Worker JVM started by SuiteLauncher. Reads test class names from standard
+ * input, one per line, runs each with JUnit and reports the results on
+ * standard output. Anything the tests print to standard output is redirected
+ * to standard error so it cannot corrupt the results.
+ */
+public final class SuiteWorker {
+
+	static final String FAILURE = "FAILURE";
+	static final String RESULT = "RESULT";
+
+	static String escape(final String s) {
+		if (s == null) {
+			return "";
+		}
+		return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	static String unescape(final String s) {
+		final StringBuilder b = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			if ((c == '\\') && ((i + 1) < s.length())) {
+				final char next = s.charAt(++i);
+				switch (next) {
+					case 't':
+						b.append('\t');
+						break;
+					case 'n':
+						b.append('\n');
+						break;
+					case 'r':
+						b.append('\r');
+						break;
+					default:
+						b.append(next);
+						break;
+				}
+			} else {
+				b.append(c);
+			}
+		}
+		return b.toString();
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+		System.setOut(System.err);
+
+		final BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String className;
+		while ((className = in.readLine()) != null) {
+			if (!className.isEmpty()) {
+				runClass(className.trim(), protocol);
+			}
+		}
+
+		// AWT threads started by the tests would otherwise keep the JVM alive.
+		System.exit(0);
+	}
+
+	/**
+	 * Runs a test class, or a single test method given as class#method, and
+	 * writes FAILURE and RESULT lines for it.
+	 */
+	static void runClass(final String className, final PrintStream protocol) {
+		final long start = System.nanoTime();
+		int run = 0;
+		int failures = 0;
+		int ignored = 0;
+		try {
+			final int hash = className.indexOf('#');
+			final Request request = hash < 0 ? Request.aClass(Class.forName(className))
+					: Request.method(Class.forName(className.substring(0, hash)), className.substring(hash + 1));
+			final Result result = new JUnitCore().run(request);
+			run = result.getRunCount();
+			failures = result.getFailureCount();
+			ignored = result.getIgnoreCount();
+			for (final Failure f : result.getFailures()) {
+				System.err.println(f.getTestHeader());
+				System.err.println(f.getTrace());
+				protocol.println(FAILURE + "\t" + className + "\t" + escape(f.getTestHeader()) + "\t"
+						+ escape(f.getMessage()));
+			}
+		} catch (final ClassNotFoundException | RuntimeException | LinkageError e) {
+			e.printStackTrace();
+			failures = 1;
+			protocol.println(FAILURE + "\t" + className + "\t" + escape(className) + "\t" + escape(e.toString()));
+		} finally {
+			// Recorders of tests that failed before stopping them would keep
+			// capturing in this JVM.
+			FlightRecorder.stopAll();
+		}
+
+		final long millis = (System.nanoTime() - start) / 1000000;
+		protocol.println(RESULT + "\t" + className + "\t" + run + "\t" + failures + "\t" + ignored + "\t" + millis);
+	}
+
+	private SuiteWorker() {
+		// Use main()
+	}
+}
@@ -0,0 +1,395 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Long running JVM that keeps the application under test loaded and runs
+ * generated tests on request, so JVM, Swing and application startup are paid
+ * once instead of once per test. Decoded reference images and JIT compiled
+ * comparison code stay warm between tests. A reset hook returns the
+ * application to its startup state before every test after the first.
+ *
+ * Commands are read one per line from a socket bound to the loopback address.
+ * The port and a random token are written to a connection file only the user
+ * can read, and every connection must start with "AUTH token", so other users
+ * of the machine cannot run code in the daemon. "RUN class" or "RUN
+ * class#method" replies with the same FAILURE and RESULT lines as SuiteWorker.
+ * "RESET" runs the reset hook, "CLEAR" discards cached reference images and
+ * "SHUTDOWN" stops the daemon. Those and "AUTH" reply with "OK" or "ERROR", a
+ * tab and a message.
+ *
+ * Usage: TestDaemon [--port N] [--connection file] [--reset class] [--cache-mb
+ * N] [--app class [application arguments...]]
+ * or: TestDaemon --client [--connection file] [--shutdown] class...
+ */
+public final class TestDaemon {
+
+	/**
+	 * Returns the application under test to the state a test expects to start
+	 * from, for example by closing dialogs and reloading data. Called on the
+	 * daemon thread, so use SwingUtilities.invokeAndWait() to change Swing
+	 * state.
+	 */
+	@FunctionalInterface
+	public interface ResetHook {
+		void reset() throws Exception;
+	}
+
+	/**
+	 * Default file the daemon writes its port and token to.
+	 */
+	public static final File DEFAULT_CONNECTION_FILE = new File(System.getProperty("user.home"), ".test-daemon");
+
+	static final String AUTH = "AUTH";
+	static final String RUN = "RUN";
+	static final String RESET = "RESET";
+	static final String CLEAR = "CLEAR";
+	static final String SHUTDOWN = "SHUTDOWN";
+	static final String OK = "OK";
+	static final String ERROR = "ERROR";
+
+	private static volatile boolean running = false;
+
+	/**
+	 * @return True if this JVM is serving a TestDaemon. Generated tests use this
+	 *         to skip starting the application, which the daemon already did.
+	 */
+	public static boolean isRunning() {
+		return running;
+	}
+
+	public static void main(final String[] args) throws Exception {
+		int port = 0;
+		File connectionFile = DEFAULT_CONNECTION_FILE;
+		String resetClass = null;
+		long cacheMb = 512;
+		boolean client = false;
+		boolean shutdown = false;
+		final List<String> names = new ArrayList<>();
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+				case "--port":
+					port = Integer.parseInt(args[++i]);
+					break;
+				case "--connection":
+					connectionFile = new File(args[++i]);
+					break;
+				case "--reset":
+					resetClass = args[++i];
+					break;
+				case "--cache-mb":
+					cacheMb = Long.parseLong(args[++i]);
+					break;
+				case "--client":
+					client = true;
+					break;
+				case "--shutdown":
+					shutdown = true;
+					break;
+				case "--app":
+					// Everything after the application class is passed to it.
+					names.addAll(Arrays.asList(args).subList(i + 1, args.length));
+					i = args.length;
+					break;
+				default:
+					names.add(args[i]);
+					break;
+			}
+		}
+
+		if (client) {
+			System.exit(runClient(connectionFile, names, shutdown) ? 0 : 1);
+		}
+
+		final ResetHook hook = resetClass == null ? null
+				: (ResetHook) Class.forName(resetClass).getDeclaredConstructor().newInstance();
+		final TestDaemon daemon = new TestDaemon(port, hook);
+		daemon.setConnectionFile(connectionFile);
+		daemon.setReferenceCacheSize(cacheMb * 1024 * 1024);
+		running = true;
+		if (!names.isEmpty()) {
+			startApplication(names.get(0), names.subList(1, names.size()).toArray(new String[0]));
+		}
+		daemon.serve();
+		System.exit(0);
+	}
+
+	private static void startApplication(final String mainClass, final String[] appArgs)
+			throws ReflectiveOperationException {
+		try {
+			Class.forName(mainClass).getMethod("main", String[].class).invoke(null, (Object) appArgs);
+		} catch (final InvocationTargetException e) {
+			throw new RuntimeException("Application " + mainClass + " failed to start", e.getCause());
+		}
+	}
+
+	/**
+	 * Writes the port and token to a file only the owner can read or write. The
+	 * file is replaced atomically so a client never reads it half written.
+	 */
+	static void writeConnectionFile(final File file, final int port, final String token) throws IOException {
+		final File dir = file.getAbsoluteFile().getParentFile();
+		Path temp;
+		try {
+			temp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp", PosixFilePermissions
+					.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+		} catch (final UnsupportedOperationException e) {
+			// Not a POSIX file system
+			temp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp");
+			final File t = temp.toFile();
+			t.setReadable(false, false);
+			t.setWritable(false, false);
+			t.setReadable(true, true);
+			t.setWritable(true, true);
+		}
+
+		final Properties properties = new Properties();
+		properties.setProperty("port", Integer.toString(port));
+		properties.setProperty("token", token);
+		try (OutputStream out = Files.newOutputStream(temp)) {
+			properties.store(out, "TestDaemon connection");
+		}
+		Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Connects to the daemon described by a connection file and authenticates.
+	 *
+	 * @return The connected socket.
+	 * @throws IOException If the daemon can't be reached or rejects the token.
+	 */
+	static Socket connect(final File connectionFile) throws IOException {
+		final Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(connectionFile.toPath())) {
+			properties.load(in);
+		}
+		final String port = properties.getProperty("port");
+		final String token = properties.getProperty("token");
+		if ((port == null) || (token == null)) {
+			throw new IOException("Invalid connection file: " + connectionFile.getAbsolutePath());
+		}
+
+		final Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+		final PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+		out.println(AUTH + " " + token);
+		final String reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+				.readLine();
+		if (!OK.equals(reply)) {
+			socket.close();
+			throw new IOException("Daemon rejected connection: " + reply);
+		}
+		return socket;
+	}
+
+	private static boolean runClient(final File connectionFile, final List<String> testNames, final boolean shutdown)
+			throws IOException {
+		boolean passed = true;
+		try (Socket socket = connect(connectionFile)) {
+			final PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+			final BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			for (final String name : testNames) {
+				out.println(RUN + " " + name);
+				String line;
+				while ((line = in.readLine()) != null) {
+					final String[] fields = line.split("\t", -1);
+					if (SuiteWorker.FAILURE.equals(fields[0]) && (fields.length >= 4)) {
+						System.out.println("FAILED " + SuiteWorker.unescape(fields[2]) + ": "
+								+ SuiteWorker.unescape(fields[3]));
+						passed = false;
+					} else if (SuiteWorker.RESULT.equals(fields[0]) && (fields.length >= 6)) {
+						System.out.println(name + ": " + fields[2] + " tests, " + fields[3] + " failures, "
+								+ fields[4] + " ignored in " + fields[5] + "ms");
+						break;
+					}
+				}
+				if (line == null) {
+					throw new IOException("Daemon closed the connection while running " + name);
+				}
+			}
+			if (shutdown) {
+				out.println(SHUTDOWN);
+				in.readLine();
+			}
+		}
+		return passed;
+	}
+
+	private final int port;
+	private final ResetHook resetHook;
+	private File connectionFile = DEFAULT_CONNECTION_FILE;
+	private byte[] token = null;
+	private long referenceCacheBytes = 512L * 1024 * 1024;
+	private boolean needsReset = false;
+	private volatile boolean shutdown = false;
+
+	/**
+	 * @param port      Loopback port to listen on. 0 picks a free port, which
+	 *                  clients find in the connection file.
+	 * @param resetHook Called before every test after the first. May be null.
+	 */
+	public TestDaemon(final int port, final ResetHook resetHook) {
+		this.port = port;
+		this.resetHook = resetHook;
+	}
+
+	/**
+	 * @param file File the port and token are written to while serving.
+	 *             Defaults to DEFAULT_CONNECTION_FILE.
+	 */
+	public void setConnectionFile(final File file) {
+		connectionFile = Objects.requireNonNull(file, "file is null");
+	}
+
+	/**
+	 * @param bytes Decoded reference images kept between tests, least recently
+	 *              used images are discarded first. Defaults to 512MB.
+	 */
+	public void setReferenceCacheSize(final long bytes) {
+		referenceCacheBytes = bytes;
+	}
+
+	/**
+	 * Serves requests, one connection at a time, until a SHUTDOWN command is
+	 * received. The application under test should already be started.
+	 */
+	public void serve() throws IOException {
+		running = true;
+		try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+			final byte[] random = new byte[32];
+			new SecureRandom().nextBytes(random);
+			final String tokenText = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+			token = tokenText.getBytes(StandardCharsets.UTF_8);
+			writeConnectionFile(connectionFile, server.getLocalPort(), tokenText);
+			System.out.println("TestDaemon listening on port " + server.getLocalPort() + ", connection file "
+					+ connectionFile.getAbsolutePath());
+			while (!shutdown) {
+				try (Socket client = server.accept()) {
+					handle(client);
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			running = false;
+			Files.deleteIfExists(connectionFile.toPath());
+			ReferenceImageStore.clearShared();
+		}
+	}
+
+	private void handle(final Socket client) throws IOException {
+		final BufferedReader in = new BufferedReader(
+				new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+		final PrintStream out = new PrintStream(client.getOutputStream(), true, "UTF-8");
+		final String auth = in.readLine();
+		if ((auth == null) || !auth.startsWith(AUTH + " ")
+				|| !MessageDigest.isEqual(token, auth.substring(AUTH.length() + 1).getBytes(StandardCharsets.UTF_8))) {
+			out.println(ERROR + "\t" + SuiteWorker.escape("Not authorized"));
+			return;
+		}
+		out.println(OK);
+
+		String line;
+		while (!shutdown && ((line = in.readLine()) != null)) {
+			line = line.trim();
+			if (line.startsWith(RUN + " ")) {
+				runTest(line.substring(RUN.length() + 1).trim(), out);
+			} else if (line.equals(RESET)) {
+				try {
+					reset();
+					out.println(OK);
+				} catch (final Exception e) {
+					e.printStackTrace();
+					out.println(ERROR + "\t" + SuiteWorker.escape(e.toString()));
+				}
+			} else if (line.equals(CLEAR)) {
+				ReferenceImageStore.clearShared();
+				out.println(OK);
+			} else if (line.equals(SHUTDOWN)) {
+				shutdown = true;
+				out.println(OK);
+			} else if (!line.isEmpty()) {
+				out.println(ERROR + "\t" + SuiteWorker.escape("Unknown command: " + line));
+			}
+		}
+	}
+
+	private void runTest(final String testName, final PrintStream out) {
+		if (needsReset) {
+			try {
+				reset();
+			} catch (final Exception e) {
+				// The application is in an unknown state, so the test is not run.
+				e.printStackTrace();
+				out.println(SuiteWorker.FAILURE + "\t" + testName + "\t" + SuiteWorker.escape("reset") + "\t"
+						+ SuiteWorker.escape(e.toString()));
+				out.println(SuiteWorker.RESULT + "\t" + testName + "\t0\t1\t0\t0");
+				return;
+			}
+		}
+
+		needsReset = true;
+		SuiteWorker.runClass(testName, out);
+		ReferenceImageStore.trimShared(referenceCacheBytes);
+	}
+
+	private void reset() throws Exception {
+		if (resetHook != null) {
+			resetHook.reset();
+			// Let events queued by the reset be handled before the next test.
+			SwingUtilities.invokeAndWait(() -> {
+				// Empty
+			});
+		}
+		needsReset = false;
+	}
+}
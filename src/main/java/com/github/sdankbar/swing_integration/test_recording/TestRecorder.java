@@ -23,6 +23,7 @@
 package com.github.sdankbar.swing_integration.test_recording;
 
 import java.awt.AWTEvent;
+import java.awt.Component;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Toolkit;
@@ -35,11 +36,16 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
@@ -49,7 +55,7 @@ import javax.swing.SwingUtilities;
 
 public class TestRecorder {
 
-	private static class ActiveWindow {
+	static class ActiveWindow {
 		private final String title;
 		private final Point location;
 
@@ -60,7 +66,17 @@ public class TestRecorder {
 
 	}
 
-	private static class RecordedEvent {
+	static class TestSegment {
+		final String checkpoint;
+		final List<String> steps;
+
+		public TestSegment(final String checkpoint, final List<String> steps) {
+			this.checkpoint = checkpoint;
+			this.steps = steps;
+		}
+	}
+
+	static class RecordedEvent {
 		private final AWTEvent event;
 		private final Instant eventTime;
 		private final File screenshotFile;
@@ -68,6 +84,9 @@ public class TestRecorder {
 
 		private final ActiveWindow window;
 
+		// Time from the event being dispatched until the event dispatch thread was idle.
+		private volatile long latencyNanos = -1;
+
 		public RecordedEvent(final AWTEvent event, final Instant eventTime, final ActiveWindow w) {
 			this.event = event;
 			this.eventTime = eventTime;
@@ -110,15 +129,21 @@ public class TestRecorder {
 		}
 	}
 
+	/**
+	 * Paints a component into a new image. Must be called on the event dispatch
+	 * thread.
+	 */
+	static BufferedImage paintToImage(final Component c) {
+		final BufferedImage i = new BufferedImage(c.getWidth(), c.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = i.createGraphics();
+		c.paint(g);
+		g.dispose();
+		return i;
+	}
+
 	public static BufferedImage takeScreenshot() {
 		final Window w = FocusManager.getCurrentManager().getActiveWindow();
-		final FutureTask<BufferedImage> task = new FutureTask<>(() -> {
-			final BufferedImage i = new BufferedImage(w.getWidth(), w.getHeight(), BufferedImage.TYPE_INT_ARGB);
-			final Graphics2D g = i.createGraphics();
-			w.paint(g);
-			g.dispose();
-			return i;
-		});
+		final FutureTask<BufferedImage> task = new FutureTask<>(() -> paintToImage(w));
 		if (SwingUtilities.isEventDispatchThread()) {
 			task.run();
 		} else {
@@ -140,8 +165,36 @@ public class TestRecorder {
 	public static void setMouseMoveRate(int milliseconds) {
 		MOVE_SAMPLE_RATE = milliseconds;
 	}
-	
+
+	/**
+	 * Sets how far, in pixels, a recorded mouse move may be from the simplified
+	 * mouse path before it is kept in the generated test. Negative values disable
+	 * simplification. Drags are always kept, so dragged paths are replayed in full
+	 * whatever the tolerance.
+	 *
+	 * @param pixels Tolerance in pixels.
+	 */
+	public static void setMousePathTolerance(double pixels) {
+		MOUSE_PATH_TOLERANCE = pixels;
+	}
+
+	/**
+	 * Sets whether screenshots after the first of a recording are stored as the
+	 * tiles that changed since the previous screenshot, in a .tiles file, instead
+	 * of as a complete PNG. TestRunner reconstructs them from the previous
+	 * reference. Screenshots that changed too much are still stored as PNGs.
+	 *
+	 * @param enabled True to store deltas. Defaults to false.
+	 */
+	public static void setDeltaReferences(boolean enabled) {
+		DELTA_REFERENCES = enabled;
+	}
+
 	private static int MOVE_SAMPLE_RATE = 150;
+	static final int MAX_STEPS_PER_METHOD = 1000;
+	private static final String LATENCY_BASELINE_FILE = "latency_baseline.csv";
+	private static double MOUSE_PATH_TOLERANCE = 3.0;
+	private static boolean DELTA_REFERENCES = false;
 
 	private final List<RecordedEvent> recordedEvents = new ArrayList<>();
 
@@ -149,6 +202,9 @@ public class TestRecorder {
 	private Instant startTime = Instant.EPOCH;
 	private File recordingDir = new File(".");
 	private Instant lastMouseMoveTime = Instant.EPOCH;
+	private int removedDelayCount = 0;
+	private BufferedImage previousScreenshot = null;
+	private String previousScreenshotName = null;
 	private final RecordingMode mode;
 	private final boolean autoRaise;
 
@@ -207,12 +263,31 @@ public class TestRecorder {
 		return new ActiveWindow(w.getName(), w.getLocationOnScreen());
 	}
 
+	/**
+	 * Measures the time from the event dispatch thread starting to dispatch an
+	 * input until the events queued before it, including its handlers, finish.
+	 * Called from the AWTEventListener before the input's handlers run. Replay
+	 * measures the same interval in ResponsivenessMonitor.
+	 */
+	private static void measureLatency(final RecordedEvent rec) {
+		final long start = System.nanoTime();
+		SwingUtilities.invokeLater(() -> rec.latencyNanos = System.nanoTime() - start);
+	}
+
+	private static int addStep(final List<String> latencies, final int stepIndex, final RecordedEvent e) {
+		if (e.latencyNanos >= 0) {
+			latencies.add(stepIndex + "," + (e.latencyNanos / 1000));
+		}
+		return stepIndex + 1;
+	}
+
 	private void handleMouseMotionEvent(final AWTEvent event) {
 		final Instant now = Instant.now();
 		final long milli = now.toEpochMilli();
 		if (((milli - lastMouseMoveTime.toEpochMilli()) > MOVE_SAMPLE_RATE) && isRecording) {
 			final RecordedEvent rec = new RecordedEvent(event, now, true, getActiveWindow());
 			lastMouseMoveTime = now;
+			measureLatency(rec);
 			addEvent(rec);
 		}
 	}
@@ -220,6 +295,7 @@ public class TestRecorder {
 	private void handleMouseEvent(final AWTEvent event) {
 		if (isRecording) {
 			final RecordedEvent rec = new RecordedEvent(event, Instant.now(), getActiveWindow());
+			measureLatency(rec);
 			addEvent(rec);
 		}
 	}
@@ -234,6 +310,7 @@ public class TestRecorder {
 				// Ignore
 			} else if (isRecording) {
 				final RecordedEvent rec = new RecordedEvent(event, Instant.now(), getActiveWindow());
+				measureLatency(rec);
 				addEvent(rec);
 			}
 			lastMouseMoveTime = Instant.EPOCH;
@@ -245,6 +322,8 @@ public class TestRecorder {
 					System.out.println("Start recording");
 					startTime = Instant.now();
 					recordedEvents.clear();
+					previousScreenshot = null;
+					previousScreenshotName = null;
 
 					recordingDir = new File("recording_" + startTime.toEpochMilli());
 					recordingDir.mkdir();
@@ -260,7 +339,18 @@ public class TestRecorder {
 					final String fileName = "screenshot_" + now + ".png";
 					final File filePath = new File(recordingDir, fileName);
 					try {
-						ImageIO.write(windowImage, "PNG", filePath);
+						if (DELTA_REFERENCES) {
+							ReferenceDelta.writeReference(filePath, windowImage, previousScreenshotName,
+									previousScreenshot);
+							previousScreenshot = windowImage;
+							previousScreenshotName = fileName;
+						} else {
+							ImageIO.write(windowImage, "PNG", filePath);
+						}
+						final ComponentTreeSnapshot tree = ComponentTreeSnapshot.capture();
+						if (tree != null) {
+							tree.write(new File(recordingDir, fileName.replace(".png", ".tree")));
+						}
 						final RecordedEvent rec = new RecordedEvent(Instant.now(), filePath);
 						addEvent(rec);
 					} catch (final IOException e) {
@@ -270,6 +360,7 @@ public class TestRecorder {
 				lastMouseMoveTime = Instant.EPOCH;
 			} else if (isRecording) {
 				final RecordedEvent rec = new RecordedEvent(event, Instant.now(), getActiveWindow());
+				measureLatency(rec);
 				addEvent(rec);
 			}
 			lastMouseMoveTime = Instant.EPOCH;
@@ -289,6 +380,128 @@ public class TestRecorder {
 		}
 	}
 
+	static boolean isPinnedMotion(final RecordedEvent previous, final RecordedEvent current) {
+		final MouseEvent mouse = (MouseEvent) current.event;
+		if (mouse.getID() == MouseEvent.MOUSE_DRAGGED) {
+			return true;
+		} else if (previous == null) {
+			return false;
+		} else if (((MouseEvent) previous.event).getComponent() != mouse.getComponent()) {
+			// Hover target changed
+			return true;
+		} else if ((previous.window == null) || (current.window == null)) {
+			return previous.window != current.window;
+		} else {
+			return !Objects.equals(previous.window.title, current.window.title)
+					|| !previous.window.location.equals(current.window.location);
+		}
+	}
+
+	private static void simplifyMotionRun(final List<RecordedEvent> run, final List<RecordedEvent> output) {
+		if (MOUSE_PATH_TOLERANCE < 0) {
+			output.addAll(run);
+			return;
+		}
+
+		final List<Point> path = new ArrayList<>(run.size());
+		final boolean[] pinned = new boolean[run.size()];
+		for (int i = 0; i < run.size(); ++i) {
+			final RecordedEvent e = run.get(i);
+			final MouseEvent mouse = (MouseEvent) e.event;
+			path.add(new Point(mouse.getXOnScreen(), mouse.getYOnScreen()));
+			if (isPinnedMotion(i > 0 ? run.get(i - 1) : null, e)) {
+				pinned[i] = true;
+				if (i > 0) {
+					pinned[i - 1] = true;
+				}
+			}
+		}
+
+		final boolean[] keep = MousePathSimplifier.simplify(path, pinned, MOUSE_PATH_TOLERANCE);
+		for (int i = 0; i < run.size(); ++i) {
+			if (keep[i]) {
+				output.add(run.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Removes mouse moves that do not meaningfully change the mouse path. The
+	 * last move before any other event, moves that change the hovered component
+	 * and drags are always kept.
+	 */
+	static List<RecordedEvent> simplifyRecording(final List<RecordedEvent> events) {
+		final List<RecordedEvent> output = new ArrayList<>(events.size());
+		final List<RecordedEvent> run = new ArrayList<>();
+		for (final RecordedEvent e : events) {
+			if (e.motionEvent) {
+				run.add(e);
+			} else {
+				simplifyMotionRun(run, output);
+				run.clear();
+				output.add(e);
+			}
+		}
+		simplifyMotionRun(run, output);
+		return output;
+	}
+
+	/**
+	 * @return Number of removed events that had a delay before them. Their delays
+	 *         are merged into the delay before the next event that is kept.
+	 */
+	static int countMergedDelays(final List<RecordedEvent> recorded, final List<RecordedEvent> kept,
+			final Instant start) {
+		final Set<RecordedEvent> keptEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+		keptEvents.addAll(kept);
+		int merged = 0;
+		Instant previous = start;
+		for (final RecordedEvent e : recorded) {
+			if (!keptEvents.contains(e) && (Duration.between(previous, e.eventTime).toMillis() > 0)) {
+				++merged;
+			}
+			previous = e.eventTime;
+		}
+		return merged;
+	}
+
+	private void writeDelay(final List<String> steps, final long milli) {
+		if (milli > 0) {
+			steps.add("\t\ttools.delay(" + milli + ");\n");
+		} else {
+			++removedDelayCount;
+		}
+	}
+
+	/**
+	 * Writes steps as a method taking the TestRunner. Steps beyond
+	 * MAX_STEPS_PER_METHOD are split into part methods so that long recordings
+	 * stay well below the JVM's method size limit.
+	 */
+	static void writeStepMethod(final BufferedWriter w, final String name, final List<String> steps)
+			throws IOException {
+		w.write("\n");
+		w.write("\tprivate void " + name + "(final TestRunner tools) {\n");
+		if (steps.size() <= MAX_STEPS_PER_METHOD) {
+			for (final String step : steps) {
+				w.write(step);
+			}
+			w.write("\t}\n");
+		} else {
+			final int partCount = ((steps.size() - 1) / MAX_STEPS_PER_METHOD) + 1;
+			for (int part = 1; part <= partCount; ++part) {
+				w.write("\t\t" + name + "_part_" + part + "(tools);\n");
+			}
+			w.write("\t}\n");
+
+			for (int part = 1; part <= partCount; ++part) {
+				final int from = (part - 1) * MAX_STEPS_PER_METHOD;
+				final int to = Math.min(steps.size(), from + MAX_STEPS_PER_METHOD);
+				writeStepMethod(w, name + "_part_" + part, steps.subList(from, to));
+			}
+		}
+	}
+
 	private String getAutoRaiseString(final RecordedEvent e) {
 		if (autoRaise && (mode == RecordingMode.RELATIVE) && (e.window != null)) {
 			return "\"" + e.window.title + "\", ";
@@ -297,13 +510,132 @@ public class TestRecorder {
 		}
 	}
 
+	/**
+	 * Converts recorded events into test steps, split into one segment per
+	 * checkpoint. Delays are measured between the events that are written, so
+	 * the time of removed mouse moves is folded into the next delay.
+	 *
+	 * @param events          Recorded events, already simplified.
+	 * @param start           Time recording started.
+	 * @param latencyBaseline Receives the recorded latency of each step.
+	 * @return Segments, ending with one whose checkpoint is null holding the
+	 *         steps after the last checkpoint.
+	 */
+	List<TestSegment> buildSegments(final List<RecordedEvent> events, final Instant start,
+			final List<String> latencyBaseline) {
+		removedDelayCount = 0;
+		final List<TestSegment> segments = new ArrayList<>();
+		List<String> steps = new ArrayList<>();
+		List<String> latencies = new ArrayList<>();
+		int stepIndex = 0;
+		Instant workingTime = start;
+		for (final RecordedEvent e : events) {
+			if (e.event != null) {
+				final long milli = Duration.between(workingTime, e.eventTime).toMillis();
+
+				if (e.event instanceof KeyEvent) {
+					writeDelay(steps, milli);
+
+					final KeyEvent key = (KeyEvent) e.event;
+					if (key.getID() == KeyEvent.KEY_PRESSED) {
+						steps.add("\t\ttools.keyPress(" + getAutoRaiseString(e) + key.getKeyCode() + ");// "
+								+ KeyEvent.getKeyText(key.getKeyCode()) + "\n");
+					} else {
+						steps.add("\t\ttools.keyRelease(" + getAutoRaiseString(e) + key.getKeyCode() + ");// "
+								+ KeyEvent.getKeyText(key.getKeyCode()) + "\n");
+					}
+					stepIndex = addStep(latencies, stepIndex, e);
+					workingTime = e.eventTime;
+				} else if (e.event instanceof MouseWheelEvent) {
+					writeDelay(steps, milli);
+
+					final MouseWheelEvent mouse = (MouseWheelEvent) e.event;
+					steps.add("\t\ttools.mouseWheel(" + getAutoRaiseString(e) + mouse.getWheelRotation() + ");\n");
+					stepIndex = addStep(latencies, stepIndex, e);
+
+					workingTime = e.eventTime;
+				} else if (e.event instanceof MouseEvent) {
+					final MouseEvent mouse = (MouseEvent) e.event;
+					if (e.motionEvent) {
+						writeDelay(steps, milli);
+
+						if (mode == RecordingMode.ABSOLUTE) {
+							steps.add("\t\ttools.mouseMove(" + mouse.getXOnScreen() + ", " + mouse.getYOnScreen()
+									+ ");\n");
+						} else {
+							steps.add("\t\ttools.mouseMoveRelative(" + getAutoRaiseString(e)
+									+ e.getRelativeX(mouse.getXOnScreen()) + ", "
+									+ e.getRelativeY(mouse.getYOnScreen()) + ");\n");
+						}
+						stepIndex = addStep(latencies, stepIndex, e);
+
+						workingTime = e.eventTime;
+					} else if (mouse.getID() == MouseEvent.MOUSE_PRESSED) {
+						writeDelay(steps, milli);
+
+						if (mode == RecordingMode.ABSOLUTE) {
+							steps.add("\t\ttools.mousePress(" + mouse.getXOnScreen() + ", " + mouse.getYOnScreen()
+									+ "," + buttonToEnum(mouse.getButton()) + ");\n");
+						} else {
+							steps.add("\t\ttools.mousePressRelative(" + getAutoRaiseString(e)
+									+ e.getRelativeX(mouse.getXOnScreen()) + ", "
+									+ e.getRelativeY(mouse.getYOnScreen()) + "," + buttonToEnum(mouse.getButton())
+									+ ");\n");
+						}
+						// Presses and releases move the mouse first, which is a separate step.
+						stepIndex = addStep(latencies, stepIndex + 1, e);
+
+						workingTime = e.eventTime;
+					} else if (mouse.getID() == MouseEvent.MOUSE_RELEASED) {
+						writeDelay(steps, milli);
+
+						if (mode == RecordingMode.ABSOLUTE) {
+							steps.add("\t\ttools.mouseRelease(" + mouse.getXOnScreen() + ", " + mouse.getYOnScreen()
+									+ "," + buttonToEnum(mouse.getButton()) + ");\n");
+						} else {
+							steps.add("\t\ttools.mouseReleaseRelative(" + getAutoRaiseString(e)
+									+ e.getRelativeX(mouse.getXOnScreen()) + ", "
+									+ e.getRelativeY(mouse.getYOnScreen()) + "," + buttonToEnum(mouse.getButton())
+									+ ");\n");
+						}
+						// Presses and releases move the mouse first, which is a separate step.
+						stepIndex = addStep(latencies, stepIndex + 1, e);
+
+						workingTime = e.eventTime;
+					}
+				}
+			} else {
+				final long milli = Duration.between(workingTime, e.eventTime).toMillis();
+				writeDelay(steps, milli);
+				steps.add("\t\ttools.compare(\"" + e.screenshotFile.getName() + "\");\n");
+				segments.add(new TestSegment(e.screenshotFile.getName(), steps));
+				steps = new ArrayList<>();
+				for (final String latency : latencies) {
+					latencyBaseline.add(e.screenshotFile.getName() + "," + latency);
+				}
+				latencies = new ArrayList<>();
+				stepIndex = 0;
+				workingTime = e.eventTime;
+			}
+		}
+
+		for (final String latency : latencies) {
+			latencyBaseline.add("end," + latency);
+		}
+		segments.add(new TestSegment(null, steps));
+		return segments;
+	}
+
 	private void saveTestSteps() {
+		final List<RecordedEvent> events = simplifyRecording(recordedEvents);
+
 		final File output = new File(recordingDir, "TemplateTest.java");
 		try (BufferedWriter w = new BufferedWriter(new FileWriter(output))) {
 
 			w.write("import java.io.File;\n");
 			w.write("import java.time.Duration;\n");
 			w.write("import org.junit.After;\n");
+			w.write("import org.junit.Before;\n");
 			w.write("import org.junit.Test;\n");
 			w.write("import java.awt.Robot;\n");
 			w.write("import java.awt.AWTException;\n");
@@ -319,7 +651,9 @@ public class TestRecorder {
 			w.write("\n");
 			w.write("\t@Before\n");
 			w.write("\tpublic void setup() {\n");
-			w.write("\t\t// TODO run test setup\n");
+			w.write("\t\tif (!TestDaemon.isRunning()) {\n");
+			w.write("\t\t\t// TODO run test setup. Inside a TestDaemon the application is already running.\n");
+			w.write("\t\t}\n");
 			w.write("\t}\n");
 			w.write("\n");
 			w.write("\t@After\n");
@@ -329,91 +663,57 @@ public class TestRecorder {
 			w.write("\n");
 			w.write("\t@Test\n");
 			w.write("\tpublic void test_run() throws AWTException {\n");
-			w.write("\t\tTestRunner tools = new TestRunner(new File(screenshotDir), collector);\n");
-			w.write("\t\ttools.waitForWindow();\n");
-
-			Instant workingTime = startTime;
-			for (final RecordedEvent e : recordedEvents) {
-				if (e.event != null) {
-					final long milli = Duration.between(workingTime, e.eventTime).toMillis();
-
-					if (e.event instanceof KeyEvent) {
-						w.write("\t\ttools.delay(" + milli + ");\n");
-
-						final KeyEvent key = (KeyEvent) e.event;
-						if (key.getID() == KeyEvent.KEY_PRESSED) {
-							w.write("\t\ttools.keyPress(" + getAutoRaiseString(e) + key.getKeyCode() + ");// "
-									+ KeyEvent.getKeyText(key.getKeyCode()) + "\n");
-						} else {
-							w.write("\t\ttools.keyRelease(" + getAutoRaiseString(e) + key.getKeyCode() + ");// "
-									+ KeyEvent.getKeyText(key.getKeyCode()) + "\n");
-						}
-						workingTime = e.eventTime;
-					} else if (e.event instanceof MouseWheelEvent) {
-						w.write("\t\ttools.delay(" + milli + ");\n");
-
-						final MouseWheelEvent mouse = (MouseWheelEvent) e.event;
-						w.write("\t\ttools.mouseWheel(" + getAutoRaiseString(e) + mouse.getWheelRotation() + ");\n");
-
-						workingTime = e.eventTime;
-					} else if (e.event instanceof MouseEvent) {
-						final MouseEvent mouse = (MouseEvent) e.event;
-						if (e.motionEvent) {
-							w.write("\t\ttools.delay(" + milli + ");\n");
-
-							if (mode == RecordingMode.ABSOLUTE) {
-								w.write("\t\ttools.mouseMove(" + mouse.getXOnScreen() + ", " + mouse.getYOnScreen()
-										+ ");\n");
-							} else {
-								w.write("\t\ttools.mouseMoveRelative(" + getAutoRaiseString(e)
-										+ e.getRelativeX(mouse.getXOnScreen()) + ", "
-										+ e.getRelativeY(mouse.getYOnScreen()) + ");\n");
-							}
-
-							workingTime = e.eventTime;
-						} else if (mouse.getID() == MouseEvent.MOUSE_PRESSED) {
-							w.write("\t\ttools.delay(" + milli + ");\n");
-
-							if (mode == RecordingMode.ABSOLUTE) {
-								w.write("\t\ttools.mousePress(" + mouse.getXOnScreen() + ", " + mouse.getYOnScreen()
-										+ "," + buttonToEnum(mouse.getButton()) + ");\n");
-							} else {
-								w.write("\t\ttools.mousePressRelative(" + getAutoRaiseString(e)
-										+ e.getRelativeX(mouse.getXOnScreen()) + ", "
-										+ e.getRelativeY(mouse.getYOnScreen()) + "," + buttonToEnum(mouse.getButton())
-										+ ");\n");
-							}
-
-							workingTime = e.eventTime;
-						} else if (mouse.getID() == MouseEvent.MOUSE_RELEASED) {
-							w.write("\t\ttools.delay(" + milli + ");\n");
-
-							if (mode == RecordingMode.ABSOLUTE) {
-								w.write("\t\ttools.mouseRelease(" + mouse.getXOnScreen() + ", " + mouse.getYOnScreen()
-										+ "," + buttonToEnum(mouse.getButton()) + ");\n");
-							} else {
-								w.write("\t\ttools.mouseReleaseRelative(" + getAutoRaiseString(e)
-										+ e.getRelativeX(mouse.getXOnScreen()) + ", "
-										+ e.getRelativeY(mouse.getYOnScreen()) + "," + buttonToEnum(mouse.getButton())
-										+ ");\n");
-							}
-
-							workingTime = e.eventTime;
-						}
-					}
-				} else {
-					final long milli = Duration.between(workingTime, e.eventTime).toMillis();
-					w.write("\t\ttools.delay(" + milli + ");\n");
-					w.write("\t\ttools.compare(\"" + e.screenshotFile.getName() + "\");\n");
-					workingTime = e.eventTime;
+			// try-with-resources stops the runner's background threads if a step throws.
+			w.write("\t\ttry (TestRunner tools = new TestRunner(new File(screenshotDir), collector)) {\n");
+
+			final List<String> latencyBaseline = new ArrayList<>();
+			final List<TestSegment> segments = buildSegments(events, startTime, latencyBaseline);
+			// The last segment holds the steps after the last checkpoint.
+			final List<String> steps = segments.remove(segments.size() - 1).steps;
+			Files.write(new File(recordingDir, LATENCY_BASELINE_FILE).toPath(), latencyBaseline,
+					StandardCharsets.UTF_8);
+			// Timing checks are flaky on shared machines, so they are opt-in.
+			w.write("\t\t\t// Uncomment to fail steps that take much longer to handle than when recorded\n");
+			w.write("\t\t\t// tools.loadLatencyBaseline(new File(screenshotDir, \"" + LATENCY_BASELINE_FILE + "\"));\n");
+
+			if (!segments.isEmpty()) {
+				final StringBuilder prefetch = new StringBuilder("\t\t\ttools.prefetch(");
+				for (int i = 0; i < segments.size(); ++i) {
+					prefetch.append(i > 0 ? ", " : "").append("\"").append(segments.get(i).checkpoint).append("\"");
 				}
+				w.write(prefetch.append(");\n").toString());
 			}
-
+			w.write("\t\t\ttools.waitForWindow();\n");
+			for (int i = 0; i < segments.size(); ++i) {
+				w.write("\t\t\ttools.checkpoint(\"" + segments.get(i).checkpoint + "\", () -> checkpoint_" + (i + 1)
+						+ "(tools));\n");
+			}
+			if (!steps.isEmpty()) {
+				w.write("\t\t\ttools.afterCheckpoints(() -> remaining_steps(tools));\n");
+			} else {
+				// Still emitted so a start checkpoint that is not in the test fails.
+				w.write("\t\t\ttools.afterCheckpoints(() -> {\n");
+				w.write("\t\t\t\t// No steps after the last checkpoint\n");
+				w.write("\t\t\t});\n");
+			}
+			w.write("\t\t\ttools.finish(getClass().getSimpleName());\n");
+			w.write("\t\t}\n");
 			w.write("\t}\n");
+
+			for (int i = 0; i < segments.size(); ++i) {
+				writeStepMethod(w, "checkpoint_" + (i + 1), segments.get(i).steps);
+			}
+			if (!steps.isEmpty()) {
+				writeStepMethod(w, "remaining_steps", steps);
+			}
+
 			w.write("\n");
 			w.write("}\n");
 
 			w.close();
+			final int removedMoves = recordedEvents.size() - events.size();
+			final int removedDelays = countMergedDelays(recordedEvents, events, startTime) + removedDelayCount;
+			System.out.println("Removed " + removedMoves + " mouse moves and " + removedDelays + " delays");
 			System.out.println("Done writing test");
 		} catch (final IOException e) {
 			e.printStackTrace();
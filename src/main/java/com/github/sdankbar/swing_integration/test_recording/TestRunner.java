@@ -23,15 +23,35 @@
 package com.github.sdankbar.swing_integration.test_recording;
 
 import java.awt.AWTException;
-import java.awt.Color;
 import java.awt.Robot;
 import java.awt.Window;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.imageio.ImageIO;
 import javax.swing.FocusManager;
@@ -39,37 +59,106 @@ import javax.swing.SwingUtilities;
 
 import org.junit.rules.ErrorCollector;
 
-public class TestRunner {
+public class TestRunner implements AutoCloseable {
+
+	public enum CompareMode {
+		/**
+		 * Compare screenshots only.
+		 */
+		PIXEL,
+		/**
+		 * Compare component trees, falling back to screenshots for references that
+		 * have no saved component tree.
+		 */
+		STRUCTURE,
+		/**
+		 * Require the component trees to match and then also compare screenshots.
+		 */
+		STRUCTURE_AND_PIXEL
+	}
 
 	private static Duration WINDOW_GET_TIMEOUT = Duration.ofMillis(2000);
+	private static Duration CHECKPOINT_TIMEOUT = Duration.ofMillis(30000);
+	private static int PREFETCH_WINDOW = 2;
+	private static ExecutorService COMPARISON_POOL = null;
+	private static final Pattern COMPARE_PATTERN = Pattern.compile("compare\\w*\\(\\s*\"([^\"]+)\"");
 
 	public static void setGetWindowTimeout(Duration timeout) {
 		WINDOW_GET_TIMEOUT = Objects.requireNonNull(timeout, "timeout is null");
 	}
+
+	/**
+	 * Sets how long to wait for the application to match the reference image of
+	 * the start checkpoint before failing.
+	 *
+	 * @param timeout Maximum time to wait.
+	 */
+	public static void setCheckpointTimeout(Duration timeout) {
+		CHECKPOINT_TIMEOUT = Objects.requireNonNull(timeout, "timeout is null");
+	}
 	
-	private static BufferedImage readImage(File imageFile) {
-		try {
-			return ImageIO.read(imageFile);
-		} catch (IOException e) {
-			throw new RuntimeException("Failed reading image file:" + imageFile.getAbsolutePath(), e);
+	private static synchronized ExecutorService getComparisonPool() {
+		if (COMPARISON_POOL == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			COMPARISON_POOL = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+				final Thread t = new Thread(r, "TestRunner-compare-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
 		}
+		return COMPARISON_POOL;
 	}
 
 	private final File imagePath;
 	private final Robot robot;
+	private final Supplier<BufferedImage> screen;
 	private final ErrorCollector collector;
 	private final int defaultThreshold;
+	private String startCheckpoint = System.getenv("START_CHECKPOINT");
+	private boolean checkpointReached = false;
+	private final RunnerMetrics metrics = new RunnerMetrics();
+	private final List<RunnerListener> listeners = new CopyOnWriteArrayList<>();
+	private ResponsivenessMonitor monitor = null;
+	private FlightRecorder flightRecorder = null;
+	private StepLatency lastLatency = null;
+	// Read by the flight recorder thread to attribute its overhead.
+	private volatile String currentCheckpoint = "";
+	private int stepIndex = 0;
+	private LatencyBaseline latencyBaseline = null;
+	private CompareMode compareMode = CompareMode.PIXEL;
+	// Inside a TestDaemon decoded references are kept warm across tests.
+	private final ReferenceImageStore references = TestDaemon.isRunning() ? ReferenceImageStore.shared()
+			: new ReferenceImageStore();
+	private final List<String> prefetchOrder = new ArrayList<>();
+	private int prefetchPosition = 0;
+	private final List<Future<?>> pendingComparisons = new ArrayList<>();
+	private final Queue<Throwable> deferredErrors = new ConcurrentLinkedQueue<>();
 
 	public TestRunner(final File imagePath, final ErrorCollector collector) {
 		this(imagePath, collector, 65);
 	}
 
 	public TestRunner(final File imagePath, final ErrorCollector collector, final int defaultThreshold) {
+		this(imagePath, collector, defaultThreshold, createRobot(), TestRecorder::takeScreenshot);
+	}
+
+	/**
+	 * @param robot  Replays input. May be null if no input is replayed.
+	 * @param screen Captures the active window.
+	 */
+	TestRunner(final File imagePath, final ErrorCollector collector, final int defaultThreshold, final Robot robot,
+			final Supplier<BufferedImage> screen) {
 		this.imagePath = Objects.requireNonNull(imagePath, "imagePath is null");
 		this.collector = Objects.requireNonNull(collector, "collector is null");
 		this.defaultThreshold = defaultThreshold;
+		this.robot = robot;
+		this.screen = Objects.requireNonNull(screen, "screen is null");
+		listeners.add(metrics);
+	}
+
+	private static Robot createRobot() {
 		try {
-			robot = new Robot();
+			return new Robot();
 		} catch (final AWTException e) {
 			throw new RuntimeException(e);
 		}
@@ -86,32 +175,354 @@ public class TestRunner {
 		}
 	}
 
-	private BufferedImage generateDelta(final BufferedImage source, final BufferedImage target) {
-		if (source.getWidth() != target.getWidth()) {
-			return null;
-		} else if (source.getHeight() != target.getHeight()) {
-			return null;
+	/**
+	 * Starts continuously capturing the active window on a background thread.
+	 * When a comparison fails, the captured frames are written to a directory
+	 * named after the reference image with a .flight extension. Capture time is
+	 * reported to listeners as FLIGHT_RECORDER events. The recorder runs until
+	 * finish() or close() is called.
+	 *
+	 * @param framesPerSecond Capture rate.
+	 * @param capacity        Maximum number of frames kept. Frames where nothing
+	 *                        changed and no action was replayed are not kept.
+	 * @return The flight recorder, for reading its overhead.
+	 */
+	public FlightRecorder enableFlightRecorder(final int framesPerSecond, final int capacity) {
+		if (flightRecorder != null) {
+			flightRecorder.stop();
+		}
+		flightRecorder = new FlightRecorder(framesPerSecond, capacity, nanos -> fireEvent(
+				RunnerEvent.Type.FLIGHT_RECORDER, currentCheckpoint, "capture", System.nanoTime() - nanos, 0, 0, Double.NaN, 0));
+		flightRecorder.start();
+		return flightRecorder;
+	}
+
+	/**
+	 * @return errors, wrapped to first write snapshot next to the reference image
+	 *         if an error is reported. Nothing is written if the comparison is
+	 *         recaptured without an error.
+	 */
+	private Consumer<Throwable> dumpOnError(final String fileName, final FlightRecorder.Snapshot snapshot,
+			final Consumer<Throwable> errors) {
+		if (snapshot == null) {
+			return errors;
+		}
+		final AtomicBoolean dumped = new AtomicBoolean();
+		return e -> {
+			if (!dumped.getAndSet(true)) {
+				try {
+					snapshot.write(new File(imagePath, fileName.replace(".png", ".flight")));
+				} catch (final IOException ioe) {
+					errors.accept(ioe);
+				}
+			}
+			errors.accept(e);
+		};
+	}
+
+	/**
+	 * Sets how checkpoints are verified. The component tree check only applies to
+	 * references recorded with a component tree file next to the image. In
+	 * STRUCTURE mode, images of references with a component tree are not
+	 * prefetched, so set the mode before calling prefetch().
+	 *
+	 * @param mode Compare mode.
+	 */
+	public void setCompareMode(final CompareMode mode) {
+		compareMode = Objects.requireNonNull(mode, "mode is null");
+	}
+
+	/**
+	 * Sets how many of the upcoming reference images are decoded ahead of the
+	 * comparison that needs them. Each decoded 1920x1080 image takes 8MB.
+	 *
+	 * @param count Number of images. Defaults to 2.
+	 */
+	public static void setPrefetchWindow(final int count) {
+		PREFETCH_WINDOW = count;
+	}
+
+	/**
+	 * Adds reference images to the order they are compared against. The next few
+	 * of them, set by setPrefetchWindow(), are decoded on a background thread so
+	 * that they are ready by the time they are compared against. As each
+	 * reference is compared, the window moves on and images that are no longer
+	 * needed are discarded.
+	 *
+	 * @param fileNames Reference image file names, in the order the test uses
+	 *                  them.
+	 */
+	public void prefetch(final String... fileNames) {
+		synchronized (prefetchOrder) {
+			prefetchOrder.addAll(Arrays.asList(fileNames));
+		}
+		fillPrefetchWindow();
+	}
+
+	private void fillPrefetchWindow() {
+		synchronized (prefetchOrder) {
+			final int end = Math.min(prefetchOrder.size(), prefetchPosition + PREFETCH_WINDOW);
+			for (int i = prefetchPosition; i < end; ++i) {
+				final String fileName = prefetchOrder.get(i);
+				// A matching component tree is enough, so the image is likely never needed.
+				if ((compareMode != CompareMode.STRUCTURE)
+						|| !new File(imagePath, fileName.replace(".png", ".tree")).exists()) {
+					references.prefetch(new File(imagePath, fileName));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called once a reference has been compared against. Moves the prefetch
+	 * window past it and discards decoded images outside of the window, except
+	 * the compared one, which a delta stored reference that follows it needs as
+	 * its base.
+	 */
+	private void referenceUsed(final String fileName) {
+		synchronized (prefetchOrder) {
+			final int index = prefetchOrder.subList(prefetchPosition, prefetchOrder.size()).indexOf(fileName);
+			if (index >= 0) {
+				prefetchPosition += index + 1;
+			}
+
+			final List<File> keep = new ArrayList<>();
+			keep.add(new File(imagePath, fileName));
+			final int end = Math.min(prefetchOrder.size(), prefetchPosition + PREFETCH_WINDOW);
+			for (int i = prefetchPosition; i < end; ++i) {
+				keep.add(new File(imagePath, prefetchOrder.get(i)));
+			}
+			references.retainOnly(keep);
+		}
+		fillPrefetchWindow();
+	}
+
+	/**
+	 * Prefetches the reference images compared against in a generated test or
+	 * replay script, in the order they appear.
+	 *
+	 * @param script Test source or replay script.
+	 */
+	public void prefetchReferencesIn(final File script) {
+		try {
+			final String text = new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8);
+			final Matcher m = COMPARE_PATTERN.matcher(text);
+			final List<String> names = new ArrayList<>();
+			while (m.find()) {
+				names.add(m.group(1));
+			}
+			prefetch(names.toArray(new String[0]));
+		} catch (final IOException e) {
+			throw new RuntimeException("Failed reading script:" + script.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @return Number of comparisons whose reference image was already decoded.
+	 */
+	public int getPrefetchHits() {
+		return references.getHitCount();
+	}
+
+	/**
+	 * @return Number of comparisons that had to wait for a prefetch in progress.
+	 */
+	public int getPrefetchStalls() {
+		return references.getStallCount();
+	}
+
+	/**
+	 * @return Number of comparisons whose reference image was never prefetched.
+	 */
+	public int getPrefetchMisses() {
+		return references.getMissCount();
+	}
+
+	/**
+	 * Skip all test steps up to and including the named checkpoint. When the
+	 * checkpoint is reached, the runner waits until the application matches the
+	 * checkpoint's reference image and then continues with the following steps.
+	 * Defaults to the START_CHECKPOINT environment variable.
+	 *
+	 * @param fileName Reference image file name of the checkpoint, or null to run
+	 *                 all steps.
+	 */
+	public void setStartCheckpoint(final String fileName) {
+		startCheckpoint = fileName;
+		checkpointReached = false;
+	}
+
+	private boolean isRunningSteps() {
+		return (startCheckpoint == null) || startCheckpoint.isEmpty() || checkpointReached;
+	}
+
+	/**
+	 * Runs the steps that lead up to, and end by comparing against, a checkpoint.
+	 *
+	 * @param fileName Reference image file name the steps end with.
+	 * @param steps    Test steps.
+	 */
+	public void checkpoint(final String fileName, final Runnable steps) {
+		Objects.requireNonNull(fileName, "fileName is null");
+		Objects.requireNonNull(steps, "steps is null");
+		if (isRunningSteps()) {
+			currentCheckpoint = fileName;
+			stepIndex = 0;
+			steps.run();
+		} else if (fileName.equals(startCheckpoint)) {
+			waitForCheckpoint(fileName);
+			checkpointReached = true;
+		}
+	}
+
+	/**
+	 * Runs the steps recorded after the last checkpoint.
+	 *
+	 * @param steps Test steps.
+	 */
+	public void afterCheckpoints(final Runnable steps) {
+		Objects.requireNonNull(steps, "steps is null");
+		if (isRunningSteps()) {
+			currentCheckpoint = "end";
+			stepIndex = 0;
+			steps.run();
 		} else {
-			final boolean whiteEquals = ("1".equals(System.getenv("WHITE_EQUALS")));
-			final BufferedImage output = new BufferedImage(source.getWidth(), source.getHeight(),
-					BufferedImage.TYPE_INT_ARGB);
-
-			for (int x = 0; x < source.getWidth(); ++x) {
-				for (int y = 0; y < source.getHeight(); ++y) {
-					final int sColor = source.getRGB(x, y);
-					final int tColor = target.getRGB(x, y);
-					final int deltaR = Math.abs(red(sColor) - red(tColor));
-					final int deltaG = Math.abs(green(sColor) - green(tColor));
-					final int deltaB = Math.abs(blue(sColor) - blue(tColor));
-					if (whiteEquals && (deltaR == 0) && (deltaG == 0) && (deltaB == 0)) {
-						output.setRGB(x, y, new Color(255, 255, 255).getRGB());
-					} else {
-						output.setRGB(x, y, new Color(deltaR, deltaG, deltaB).getRGB());
-					}
+			throw new IllegalStateException("Start checkpoint " + startCheckpoint + " not found");
+		}
+	}
+
+	private void waitForCheckpoint(final String fileName) {
+		final BufferedImage target = loadReference(fileName);
+		final long end = System.currentTimeMillis() + CHECKPOINT_TIMEOUT.toMillis();
+		int attempt = 0;
+		while (System.currentTimeMillis() < end) {
+			++attempt;
+			if (fuzzyEquals(fileName, attempt, capture(fileName, attempt), target, defaultThreshold)) {
+				referenceUsed(fileName);
+				return;
+			}
+			delay(100);
+		}
+		throw new IllegalStateException("Application never matched start checkpoint " + fileName);
+	}
+
+	/**
+	 * Writes the difference between source and target next to the reference
+	 * image.
+	 *
+	 * @return Name of the delta file, or null if the images differ in size.
+	 */
+	private String writeDelta(final String fileName, final BufferedImage source, final BufferedImage target)
+			throws IOException {
+		final long start = System.nanoTime();
+		final BufferedImage delta = ImageComparison.generateDelta(source, target,
+				"1".equals(System.getenv("WHITE_EQUALS")));
+		if (delta == null) {
+			return null;
+		}
+
+		final String diffFile = fileName.replace(".png", ".delta.png");
+		ImageIO.write(delta, "PNG", new File(imagePath, diffFile));
+		final String reportDir = System.getenv("DELTA_REPORT_DIR");
+		if ((reportDir != null) && !reportDir.isEmpty()) {
+			// Collected by SuiteLauncher into a single report.
+			ImageIO.write(delta, "PNG", new File(reportDir, imagePath.getName() + "_" + diffFile));
+		}
+		fireEvent(RunnerEvent.Type.DELTA_WRITE, fileName, diffFile, start, delta.getWidth(), delta.getHeight(),
+				Double.NaN, 0);
+		return diffFile;
+	}
+
+	/**
+	 * Overwrites a reference image with a recaptured one, as a PNG keyframe.
+	 * References stored as deltas against it are first rewritten as deltas
+	 * against the new image so they still reconstruct to the same pixels.
+	 */
+	private synchronized void saveReference(final String fileName, final BufferedImage image) throws IOException {
+		final File file = new File(imagePath, fileName);
+		final Map<String, BufferedImage> dependents = new HashMap<>();
+		for (final String dependent : ReferenceDelta.findDependents(imagePath, fileName)) {
+			dependents.put(dependent, references.get(new File(imagePath, dependent)));
+		}
+
+		ReferenceDelta.writeReference(file, image, null, null);
+		references.invalidate(file);
+		for (final Map.Entry<String, BufferedImage> e : dependents.entrySet()) {
+			final File dependentFile = new File(imagePath, e.getKey());
+			ReferenceDelta.writeReference(dependentFile, e.getValue(), fileName, image);
+			references.invalidate(dependentFile);
+		}
+	}
+
+	private void handleMismatch(final String fileName, final BufferedImage source, final BufferedImage target,
+			final Consumer<Throwable> errors) throws IOException {
+		if ("1".equals(System.getenv("RECAPTURE_CONDITIONALLY"))
+				&& !"".equals(System.getenv("RECAPTURE_LOWER_BOUND"))) {
+			final double ratio = ImageComparison.getPeakSignalToNoiseRatio(source, target);
+			final double lowerBound = Double.parseDouble(System.getenv("RECAPTURE_LOWER_BOUND"));
+			if (ratio >= lowerBound) {
+				writeDelta(fileName, source, target);
+				saveReference(fileName, source);
+			} else {
+				final String diffFile = writeDelta(fileName, source, target);
+				if (diffFile != null) {
+					errors.accept(new RuntimeException("Image does not match " + fileName
+							+ " and not eligible for recapture. See " + diffFile));
+				} else {
+					errors.accept(new RuntimeException(
+							"Image does not match " + fileName + " and not eligible for recapture."));
 				}
 			}
+		} else if ("1".equals(System.getenv("RECAPTURE"))) {
+			writeDelta(fileName, source, target);
+			saveReference(fileName, source);
+		} else {
+			final String diffFile = writeDelta(fileName, source, target);
+			if (diffFile != null) {
+				errors.accept(new RuntimeException("Image does not match " + fileName + ". See " + diffFile));
+			} else {
+				errors.accept(new RuntimeException("Image does not match " + fileName + "."));
+			}
+		}
+	}
+
+	/**
+	 * @return The component tree saved with a reference image, or null if there
+	 *         is none or the compare mode is PIXEL.
+	 */
+	private ComponentTreeSnapshot getReferenceTree(final String fileName) {
+		if (compareMode == CompareMode.PIXEL) {
+			return null;
+		}
+
+		final File treeFile = new File(imagePath, fileName.replace(".png", ".tree"));
+		if (treeFile.exists()) {
+			return ComponentTreeSnapshot.read(treeFile);
+		} else {
+			return null;
+		}
+	}
 
-			return output;
+	/**
+	 * @param screenshot Screenshot taken when actual was captured, saved as the
+	 *                   new reference if recapturing. May be null.
+	 */
+	private void handleStructureMismatch(final String fileName, final ComponentTreeSnapshot expected,
+			final ComponentTreeSnapshot actual, final BufferedImage screenshot, final Consumer<Throwable> errors)
+			throws IOException {
+		final String treeFile = fileName.replace(".png", ".tree");
+		if (actual == null) {
+			errors.accept(new RuntimeException("Component tree does not match " + treeFile + ". No active window."));
+		} else if ("1".equals(System.getenv("RECAPTURE"))) {
+			actual.write(new File(imagePath, treeFile));
+			if (screenshot != null) {
+				saveReference(fileName, screenshot);
+			}
+		} else {
+			final String actualFile = fileName.replace(".png", ".actual.tree");
+			actual.write(new File(imagePath, actualFile));
+			errors.accept(new RuntimeException("Component tree does not match " + treeFile + ", "
+					+ expected.firstDifference(actual) + ". See " + actualFile));
 		}
 	}
 
@@ -120,58 +531,49 @@ public class TestRunner {
 	}
 
 	public void compare(final String fileName, final int minimumScore) {
+		if (flightRecorder != null) {
+			flightRecorder.annotate("compare " + fileName);
+		}
 		try {
-			final File fullPath = new File(imagePath, fileName);
-			final BufferedImage target = readImage(fullPath);
+			final ComponentTreeSnapshot expectedTree = getReferenceTree(fileName);
+			BufferedImage target = null;
+			if ((expectedTree == null) || (compareMode == CompareMode.STRUCTURE_AND_PIXEL)) {
+				target = loadReference(fileName);
+			}
 
+			ComponentTreeSnapshot actualTree = null;
 			BufferedImage source = null;
 			for (int i = 0; i < 10; ++i) {
-				source = TestRecorder.takeScreenshot();
+				if (expectedTree != null) {
+					actualTree = ComponentTreeSnapshot.capture();
+					if ((actualTree == null) || (actualTree.getHash() != expectedTree.getHash())) {
+						Thread.sleep(100);
+						continue;
+					} else if (compareMode == CompareMode.STRUCTURE) {
+						return;
+					}
+				}
+
+				source = capture(fileName, i + 1);
 
-				if (fuzzyEquals(source, target, minimumScore)) {
+				if (fuzzyEquals(fileName, i + 1, source, target, minimumScore)) {
 					return;
 				}
 				Thread.sleep(100);
 			}
 
-			if ("1".equals(System.getenv("RECAPTURE_CONDITIONALLY"))
-					&& !"".equals(System.getenv("RECAPTURE_LOWER_BOUND"))) {
-				final double ratio = getPeakSignalToNoiseRatio(source, target);
-				final double lowerBound = Double.parseDouble(System.getenv("RECAPTURE_LOWER_BOUND"));
-				if (ratio >= lowerBound) {
-					final BufferedImage delta = generateDelta(source, target);
-					if (delta != null) {
-						final String diffFile = fileName.replace(".png", ".delta.png");
-						ImageIO.write(delta, "PNG", new File(imagePath, diffFile));
-					}
-					ImageIO.write(source, "PNG", new File(imagePath, fileName));
+			final FlightRecorder.Snapshot snapshot = flightRecorder == null ? null : flightRecorder.snapshot();
+			try {
+				final Consumer<Throwable> errors = dumpOnError(fileName, snapshot, collector::addError);
+				if ((expectedTree != null)
+						&& ((actualTree == null) || (actualTree.getHash() != expectedTree.getHash()))) {
+					handleStructureMismatch(fileName, expectedTree, actualTree, screen.get(), errors);
 				} else {
-					final BufferedImage delta = generateDelta(source, target);
-					if (delta != null) {
-						final String diffFile = fileName.replace(".png", ".delta.png");
-						ImageIO.write(delta, "PNG", new File(imagePath, diffFile));
-						collector.addError(new RuntimeException("Image does not match " + fileName
-								+ " and not eligible for recapture. See " + diffFile));
-					} else {
-						collector.addError(new RuntimeException(
-								"Image does not match " + fileName + " and not eligible for recapture."));
-					}
-				}
-			} else if ("1".equals(System.getenv("RECAPTURE"))) {
-				final BufferedImage delta = generateDelta(source, target);
-				if (delta != null) {
-					final String diffFile = fileName.replace(".png", ".delta.png");
-					ImageIO.write(delta, "PNG", new File(imagePath, diffFile));
+					handleMismatch(fileName, source, target, errors);
 				}
-				ImageIO.write(source, "PNG", new File(imagePath, fileName));
-			} else {
-				final BufferedImage delta = generateDelta(source, target);
-				if (delta != null) {
-					final String diffFile = fileName.replace(".png", ".delta.png");
-					ImageIO.write(delta, "PNG", new File(imagePath, diffFile));
-					collector.addError(new RuntimeException("Image does not match " + fileName + ". See " + diffFile));
-				} else {
-					collector.addError(new RuntimeException("Image does not match " + fileName + "."));
+			} finally {
+				if (snapshot != null) {
+					snapshot.release();
 				}
 			}
 
@@ -180,62 +582,228 @@ public class TestRunner {
 		} catch (final InterruptedException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} finally {
+			referenceUsed(fileName);
 		}
 	}
 
-	private int red(final int c) {
-		return (c >> 16) & 0xFF;
+	public void compareDeferred(final String fileName) {
+		compareDeferred(fileName, defaultThreshold);
 	}
 
-	private int green(final int c) {
-		return (c >> 8) & 0xFF;
-	}
+	/**
+	 * Captures the screen immediately, then compares it against the reference
+	 * image on a background thread while the test continues. Unlike compare(),
+	 * the capture is not retried, so only use this once the application is known
+	 * to have finished updating. Errors are reported by awaitComparisons() or
+	 * finish(). If the test ends without either, close() throws them instead.
+	 *
+	 * @param fileName     Reference image file name.
+	 * @param minimumScore Minimum peak signal to noise ratio for the images to be
+	 *                     considered equal.
+	 */
+	public void compareDeferred(final String fileName, final int minimumScore) {
+		if (flightRecorder != null) {
+			flightRecorder.annotate("compareDeferred " + fileName);
+		}
+		final ComponentTreeSnapshot expectedTree = getReferenceTree(fileName);
+		final ComponentTreeSnapshot actualTree = expectedTree != null ? ComponentTreeSnapshot.capture() : null;
+		final boolean structureMatches = (actualTree != null) && (actualTree.getHash() == expectedTree.getHash());
+		if (structureMatches && (compareMode == CompareMode.STRUCTURE)) {
+			referenceUsed(fileName);
+			return;
+		}
 
-	private int blue(final int c) {
-		return (c >> 0) & 0xFF;
-	}
+		final BufferedImage source = structureMatches || (expectedTree == null) ? capture(fileName, 1) : null;
+		// Taken now so a recaptured reference shows the same state as its tree.
+		final BufferedImage screenshot = (expectedTree != null) && !structureMatches ? screen.get() : null;
+		// Taken now so a failure shows the frames leading up to this capture. This
+		// copies no pixels and is released once the comparison is done.
+		final FlightRecorder.Snapshot snapshot = flightRecorder == null ? null : flightRecorder.snapshot();
+		final Consumer<Throwable> errors = dumpOnError(fileName, snapshot, deferredErrors::add);
+		pendingComparisons.add(getComparisonPool().submit(() -> {
+			try {
+				if ((expectedTree != null) && !structureMatches) {
+					handleStructureMismatch(fileName, expectedTree, actualTree, screenshot, errors);
+					return;
+				}
 
-	private double getPeakSignalToNoiseRatio(final BufferedImage source, final BufferedImage target) {
-		if ((source == null) || (target == null)) {
-			return 0;
-		} else if (source.getWidth() != target.getWidth()) {
-			return 0;
-		} else if (source.getHeight() != target.getHeight()) {
-			return 0;
-		} else {
-			long sqSum = 0;
-			final int pixelCount = source.getWidth() * source.getHeight();
-			for (int x = 0; x < source.getWidth(); ++x) {
-				for (int y = 0; y < source.getHeight(); ++y) {
-					final int sColor = source.getRGB(x, y);
-					final int tColor = target.getRGB(x, y);
-					final int deltaR = red(sColor) - red(tColor);
-					final int deltaG = green(sColor) - green(tColor);
-					final int deltaB = blue(sColor) - blue(tColor);
-					sqSum += (deltaR * deltaR) + (deltaG * deltaG) + (deltaB * deltaB);
+				final BufferedImage target = loadReference(fileName);
+				if (!fuzzyEquals(fileName, 1, source, target, minimumScore)) {
+					handleMismatch(fileName, source, target, errors);
+				}
+			} catch (final IOException | RuntimeException e) {
+				deferredErrors.add(e);
+			} finally {
+				if (snapshot != null) {
+					snapshot.release();
 				}
+				referenceUsed(fileName);
 			}
+		}));
+	}
 
-			final double meanSquareError = sqSum / (3.0 * pixelCount);
-			if (meanSquareError == 0) {
-				// Avoid division by 0.
-				return 1000;
-			} else {
-				final double peakSignalToNoiseRatio = 10 * Math.log10((255 * 255) / meanSquareError);
-				return Math.min(peakSignalToNoiseRatio, 1000.0);
+	/**
+	 * Waits for all comparisons started by compareDeferred() to finish and adds
+	 * their errors to the ErrorCollector.
+	 */
+	public void awaitComparisons() {
+		for (final Throwable error : takeDeferredErrors()) {
+			collector.addError(error);
+		}
+	}
+
+	private List<Throwable> takeDeferredErrors() {
+		for (final Future<?> f : pendingComparisons) {
+			try {
+				f.get();
+			} catch (final ExecutionException e) {
+				deferredErrors.add(e.getCause());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				deferredErrors.add(e);
+				break;
 			}
 		}
+		pendingComparisons.clear();
+
+		final List<Throwable> errors = new ArrayList<>();
+		Throwable error;
+		while ((error = deferredErrors.poll()) != null) {
+			errors.add(error);
+		}
+		return errors;
 	}
 
-	private boolean fuzzyEquals(final BufferedImage source, final BufferedImage target, final double ratiodB) {
-		final double peakSignalToNoiseRatio = getPeakSignalToNoiseRatio(source, target);
-		System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-		System.out.println("Signal=" + peakSignalToNoiseRatio);
-		System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+	private boolean fuzzyEquals(final String fileName, final int attempt, final BufferedImage source,
+			final BufferedImage target, final double ratiodB) {
+		final long start = System.nanoTime();
+		final double peakSignalToNoiseRatio = ImageComparison.getPeakSignalToNoiseRatio(source, target);
+		fireEvent(RunnerEvent.Type.COMPARISON, fileName, fileName, start, target == null ? 0 : target.getWidth(),
+				target == null ? 0 : target.getHeight(), peakSignalToNoiseRatio, attempt);
 		return (peakSignalToNoiseRatio > ratiodB);
 	}
 
+	private BufferedImage capture(final String fileName, final int attempt) {
+		final long start = System.nanoTime();
+		final BufferedImage image = screen.get();
+		fireEvent(RunnerEvent.Type.CAPTURE, fileName, fileName, start, image == null ? 0 : image.getWidth(),
+				image == null ? 0 : image.getHeight(), Double.NaN, attempt);
+		return image;
+	}
+
+	private BufferedImage loadReference(final String fileName) {
+		final long start = System.nanoTime();
+		final BufferedImage image = references.get(new File(imagePath, fileName));
+		fireEvent(RunnerEvent.Type.REFERENCE_LOAD, fileName, fileName, start, image == null ? 0 : image.getWidth(),
+				image == null ? 0 : image.getHeight(), Double.NaN, 0);
+		return image;
+	}
+
+	private void fireEvent(final RunnerEvent.Type type, final String checkpoint, final String name,
+			final long startNanos, final int width, final int height, final double peakSignalToNoiseRatio,
+			final int attempt) {
+		final RunnerEvent event = new RunnerEvent(type, checkpoint, name, System.nanoTime() - startNanos, width,
+				height, peakSignalToNoiseRatio, attempt);
+		for (final RunnerListener l : listeners) {
+			l.onEvent(event);
+		}
+	}
+
+	/**
+	 * Adds a listener that is told about every capture, reference load,
+	 * comparison, delta write, robot action, event dispatch thread sync, delay
+	 * and flight recorder capture.
+	 *
+	 * @param listener Listener to add.
+	 */
+	public void addListener(final RunnerListener listener) {
+		listeners.add(Objects.requireNonNull(listener, "listener is null"));
+	}
+
+	public void removeListener(final RunnerListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return Totals of every operation performed by this runner.
+	 */
+	public RunnerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Waits for deferred comparisons, stops the flight recorder and, if the METRICS_OUTPUT environment
+	 * variable is set, writes the metrics summary to the directory it names.
+	 *
+	 * @param testName Name of the summary file, without extension.
+	 * @throws IllegalStateException If a start checkpoint was set but no checkpoint of the test has that
+	 *                               name, so no steps were run.
+	 */
+	public void finish(final String testName) {
+		final boolean startCheckpointFound = isRunningSteps();
+		awaitComparisons();
+		close();
+
+		final String outputDir = System.getenv("METRICS_OUTPUT");
+		if ((outputDir != null) && !outputDir.isEmpty()) {
+			final File dir = new File(outputDir);
+			dir.mkdirs();
+			try {
+				metrics.writeJson(new File(dir, testName + ".metrics.json"));
+			} catch (final IOException e) {
+				throw new RuntimeException("Failed writing metrics for " + testName, e);
+			}
+		}
+
+		if (!startCheckpointFound) {
+			throw new IllegalStateException("Start checkpoint " + startCheckpoint + " not found");
+		}
+	}
+
+	/**
+	 * Waits for deferred comparisons, stops the flight recorder and resets the
+	 * runner so it can run another test. Called by finish(), but should also be
+	 * called when a test ends early, for example by creating the runner in a
+	 * try-with-resources statement.
+	 *
+	 * @throws RuntimeException If deferred comparisons failed that were not yet
+	 *                          reported by awaitComparisons() or finish(), with
+	 *                          each failure attached as a suppressed exception.
+	 *                          The test has already ended, so adding them to the
+	 *                          ErrorCollector would lose them.
+	 */
+	@Override
+	public void close() {
+		final List<Throwable> errors;
+		try {
+			errors = takeDeferredErrors();
+		} finally {
+			if (flightRecorder != null) {
+				flightRecorder.stop();
+			}
+			synchronized (prefetchOrder) {
+				prefetchOrder.clear();
+				prefetchPosition = 0;
+			}
+			references.retainOnly(Collections.emptyList());
+			checkpointReached = false;
+			currentCheckpoint = "";
+			stepIndex = 0;
+			lastLatency = null;
+		}
+
+		if (!errors.isEmpty()) {
+			final RuntimeException e = new RuntimeException("Unreported deferred comparison failures: " + errors.size());
+			for (final Throwable error : errors) {
+				e.addSuppressed(error);
+			}
+			throw e;
+		}
+	}
+
 	public void waitForEvent() {
+		final long start = System.nanoTime();
 		try {
 			SwingUtilities.invokeAndWait(() -> {
 				// Empty Implementation
@@ -243,11 +811,126 @@ public class TestRunner {
 		} catch (InvocationTargetException | InterruptedException e) {
 			e.printStackTrace();
 		}
+		fireEvent(RunnerEvent.Type.EDT_SYNC, currentCheckpoint, "waitForEvent", start, 0, 0, Double.NaN, 0);
+	}
+
+	/**
+	 * Performs a robot action and waits for the event dispatch thread to process
+	 * it, measuring the application's response if monitoring is enabled.
+	 */
+	private void replay(final String name, final Runnable robotAction) {
+		if (flightRecorder != null) {
+			flightRecorder.annotate(name + " step " + stepIndex + " of " + currentCheckpoint);
+		}
+		if (monitor == null) {
+			final long start = System.nanoTime();
+			robotAction.run();
+			fireEvent(RunnerEvent.Type.ROBOT_ACTION, currentCheckpoint, name, start, 0, 0, Double.NaN, 0);
+			waitForEvent();
+		} else {
+			final long start = monitor.mark();
+			robotAction.run();
+			fireEvent(RunnerEvent.Type.ROBOT_ACTION, currentCheckpoint, name, start, 0, 0, Double.NaN, 0);
+			final long syncStart = System.nanoTime();
+			lastLatency = monitor.measure(start, currentCheckpoint, stepIndex);
+			fireEvent(RunnerEvent.Type.EDT_SYNC, currentCheckpoint, name, syncStart, 0, 0, Double.NaN, 0);
+			checkLatencyBaseline(lastLatency);
+		}
+		++stepIndex;
+	}
+
+	/**
+	 * Measures, for every replayed input, the time until the event dispatch
+	 * thread receives it, the time until the event dispatch thread is idle and
+	 * the time until the last repaint completes. Also counts events that block the
+	 * event dispatch thread for longer than stallThreshold, starting from zero
+	 * even if an earlier runner in this JVM enabled the monitor.
+	 *
+	 * @param stallThreshold Minimum time spent dispatching a single event for it
+	 *                       to count as an event dispatch thread stall.
+	 */
+	public void enableResponsivenessMonitor(final Duration stallThreshold) {
+		Objects.requireNonNull(stallThreshold, "stallThreshold is null");
+		monitor = ResponsivenessMonitor.install();
+		monitor.setStallThreshold(stallThreshold);
+		monitor.resetStalls();
+	}
+
+	/**
+	 * Loads latencies recorded by TestRecorder and enables the responsiveness
+	 * monitor. Every replayed input that has a recorded latency reports an error
+	 * if it takes longer than the recorded latency times factor plus slack. The
+	 * latency is the time from the event dispatch thread starting to dispatch
+	 * the input until it has handled it, measured the same way while recording.
+	 *
+	 * @param baselineFile Recorded latency file.
+	 * @param factor       Allowed slow down relative to the recording.
+	 * @param slack        Allowed absolute slow down.
+	 */
+	public void loadLatencyBaseline(final File baselineFile, final double factor, final Duration slack) {
+		latencyBaseline = LatencyBaseline.read(baselineFile, factor, slack);
+		if (monitor == null) {
+			enableResponsivenessMonitor(Duration.ofMillis(100));
+		}
+	}
+
+	public void loadLatencyBaseline(final File baselineFile) {
+		loadLatencyBaseline(baselineFile, 3.0, Duration.ofMillis(100));
+	}
+
+	private void checkLatencyBaseline(final StepLatency latency) {
+		if (latencyBaseline != null) {
+			final String error = latencyBaseline.check(latency);
+			if (error != null) {
+				collector.addError(new RuntimeException(error));
+			}
+		}
+	}
+
+	/**
+	 * Reports an error if the last replayed input took longer than maximum to be
+	 * handled and repainted. Requires the responsiveness monitor.
+	 *
+	 * @param maximum Maximum allowed response time.
+	 */
+	public void assertRespondsWithin(final Duration maximum) {
+		Objects.requireNonNull(maximum, "maximum is null");
+		if (monitor == null) {
+			throw new IllegalStateException("Responsiveness monitor not enabled");
+		} else if (lastLatency == null) {
+			collector.addError(new RuntimeException("No input replayed"));
+		} else if (lastLatency.getResponseTime().compareTo(maximum) > 0) {
+			collector.addError(new RuntimeException("Step " + lastLatency.getStep() + " before "
+					+ lastLatency.getCheckpoint() + " responded in " + lastLatency.getResponseTime().toMillis()
+					+ "ms, more than " + maximum.toMillis() + "ms"));
+		}
+	}
+
+	/**
+	 * @return Latency of the last replayed input, or null if the responsiveness
+	 *         monitor is not enabled or nothing was replayed.
+	 */
+	public StepLatency getLastStepLatency() {
+		return lastLatency;
+	}
+
+	/**
+	 * @return Number of events that blocked the event dispatch thread for longer
+	 *         than the stall threshold.
+	 */
+	public long getEdtStallCount() {
+		return monitor == null ? 0 : monitor.getStallCount();
+	}
+
+	/**
+	 * @return Longest time a single event blocked the event dispatch thread for.
+	 */
+	public Duration getLongestEdtStall() {
+		return monitor == null ? Duration.ZERO : monitor.getLongestStall();
 	}
 
 	public void keyPress(final int keyCode) {
-		robot.keyPress(keyCode);
-		waitForEvent();
+		replay("keyPress", () -> robot.keyPress(keyCode));
 	}
 
 	public void keyPress(final String windowName, final int keyCode) {
@@ -257,8 +940,7 @@ public class TestRunner {
 	}
 
 	public void keyRelease(final int keyCode) {
-		robot.keyRelease(keyCode);
-		waitForEvent();
+		replay("keyRelease", () -> robot.keyRelease(keyCode));
 	}
 
 	public void keyRelease(final String windowName, final int keyCode) {
@@ -268,8 +950,7 @@ public class TestRunner {
 	}
 
 	public void mouseWheel(final int wheelClickCount) {
-		robot.mouseWheel(wheelClickCount);
-		waitForEvent();
+		replay("mouseWheel", () -> robot.mouseWheel(wheelClickCount));
 	}
 
 	public void mouseWheel(final String windowName, final int wheelClickCount) {
@@ -296,16 +977,14 @@ public class TestRunner {
 	}
 
 	public void mouseMove(final int x, final int y) {
-		robot.mouseMove(x, y);
-		waitForEvent();
+		replay("mouseMove", () -> robot.mouseMove(x, y));
 	}
 
 	public void mouseMoveRelative(final int x, final int y) {
 		final Window w = getCurrentFocusedWindow();
 		final int absX = (int) (w.getLocationOnScreen().getX() + x);
 		final int absY = (int) (w.getLocationOnScreen().getY() + y);
-		robot.mouseMove(absX, absY);
-		waitForEvent();
+		replay("mouseMove", () -> robot.mouseMove(absX, absY));
 	}
 
 	public void mouseMoveRelative(final String windowName, final int x, final int y) {
@@ -316,14 +995,12 @@ public class TestRunner {
 
 	public void mousePress(final int x, final int y, final int buttons) {
 		mouseMove(x, y);
-		robot.mousePress(buttons);
-		waitForEvent();
+		replay("mousePress", () -> robot.mousePress(buttons));
 	}
 
 	public void mousePressRelative(final int x, final int y, final int buttons) {
 		mouseMoveRelative(x, y);
-		robot.mousePress(buttons);
-		waitForEvent();
+		replay("mousePress", () -> robot.mousePress(buttons));
 	}
 
 	public void mousePressRelative(final String windowName, final int x, final int y, final int buttons) {
@@ -334,14 +1011,12 @@ public class TestRunner {
 
 	public void mouseRelease(final int x, final int y, final int buttons) {
 		mouseMove(x, y);
-		robot.mouseRelease(buttons);
-		waitForEvent();
+		replay("mouseRelease", () -> robot.mouseRelease(buttons));
 	}
 
 	public void mouseReleaseRelative(final int x, final int y, final int buttons) {
 		mouseMoveRelative(x, y);
-		robot.mouseRelease(buttons);
-		waitForEvent();
+		replay("mouseRelease", () -> robot.mouseRelease(buttons));
 	}
 
 	public void mouseReleaseRelative(final String windowName, final int x, final int y, final int buttons) {
@@ -351,12 +1026,14 @@ public class TestRunner {
 	}
 
 	public void delay(final int milli) {
+		final long start = System.nanoTime();
 		try {
 			Thread.sleep(milli);
 		} catch (final InterruptedException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		fireEvent(RunnerEvent.Type.DELAY, currentCheckpoint, "delay", start, 0, 0, Double.NaN, 0);
 	}
 
 	public void raiseWindow(final String name) {
@@ -0,0 +1,103 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ComponentTreeSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static JPanel createPanel(final String buttonText) {
+		final JPanel panel = new JPanel(null);
+		panel.setBounds(40, 50, 300, 200);
+		final JButton button = new JButton(buttonText);
+		button.setName("Button");
+		button.setBounds(10, 20, 100, 30);
+		panel.add(button);
+		final JLabel label = new JLabel("Label");
+		label.setBounds(10, 60, 100, 30);
+		label.setEnabled(false);
+		panel.add(label);
+		return panel;
+	}
+
+	@Test
+	public void test_capture() {
+		final ComponentTreeSnapshot snapshot = ComponentTreeSnapshot.capture(createPanel("a|b\nc"));
+		assertEquals(3, snapshot.getLines().size());
+		// The root is placed at 0,0 regardless of where it is.
+		assertEquals("javax.swing.JPanel||0,0,300,200|VE|", snapshot.getLines().get(0));
+		assertEquals(" javax.swing.JButton|Button|10,20,100,30|VE|a\\pb\\nc", snapshot.getLines().get(1));
+		assertEquals(" javax.swing.JLabel||10,60,100,30|V-|Label", snapshot.getLines().get(2));
+	}
+
+	@Test
+	public void test_escape() {
+		assertEquals("", ComponentTreeSnapshot.escape(null));
+		assertEquals("a\\\\b\\pc\\nd\\re", ComponentTreeSnapshot.escape("a\\b|c\nd\re"));
+	}
+
+	@Test
+	public void test_round_trip() throws IOException {
+		final ComponentTreeSnapshot snapshot = ComponentTreeSnapshot.capture(createPanel("a|b\nc"));
+		final File file = folder.newFile("snapshot.tree");
+		snapshot.write(file);
+
+		final ComponentTreeSnapshot read = ComponentTreeSnapshot.read(file);
+		assertEquals(snapshot.getLines(), read.getLines());
+		assertEquals(snapshot.getHash(), read.getHash());
+		assertNull(snapshot.firstDifference(read));
+	}
+
+	@Test
+	public void test_difference() {
+		final ComponentTreeSnapshot expected = ComponentTreeSnapshot.capture(createPanel("OK"));
+		final ComponentTreeSnapshot same = ComponentTreeSnapshot.capture(createPanel("OK"));
+		final ComponentTreeSnapshot changed = ComponentTreeSnapshot.capture(createPanel("Cancel"));
+
+		assertEquals(expected.getHash(), same.getHash());
+		assertNotEquals(expected.getHash(), changed.getHash());
+		assertEquals("line 2 expected [ javax.swing.JButton|Button|10,20,100,30|VE|OK] but was"
+				+ " [ javax.swing.JButton|Button|10,20,100,30|VE|Cancel]", expected.firstDifference(changed));
+
+		final JPanel extra = createPanel("OK");
+		extra.add(new JPanel());
+		assertEquals("line 4 expected [<none>] but was [ javax.swing.JPanel||0,0,0,0|VE|]",
+				expected.firstDifference(ComponentTreeSnapshot.capture(extra)));
+	}
+}
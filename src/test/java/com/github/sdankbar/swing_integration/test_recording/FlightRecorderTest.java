@@ -0,0 +1,188 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FlightRecorderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static BufferedImage window(final Color color) {
+		final BufferedImage image = new BufferedImage(70, 40, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = image.createGraphics();
+		g.setColor(color);
+		g.fillRect(0, 0, 70, 40);
+		g.dispose();
+		return image;
+	}
+
+	private static BufferedImage patched(final Color color, final int x, final int y) {
+		final BufferedImage image = window(Color.RED);
+		final Graphics2D g = image.createGraphics();
+		g.setColor(color);
+		g.fillRect(x, y, 5, 5);
+		g.dispose();
+		return image;
+	}
+
+	private static int[] pixels(final BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+
+	private static int[] frame(final File dir, final int index) throws IOException {
+		return pixels(ImageIO.read(new File(dir, String.format("frame_%04d.png", index))));
+	}
+
+	private static FlightRecorder recorder(final int capacity) {
+		return new FlightRecorder(10, capacity, nanos -> {
+			// Overhead not checked
+		});
+	}
+
+	@Test
+	public void test_ring_eviction() throws IOException {
+		final FlightRecorder r = recorder(2);
+		final BufferedImage[] images = { window(Color.RED), window(Color.GREEN), window(Color.BLUE),
+				window(Color.YELLOW) };
+		for (int i = 0; i < images.length; ++i) {
+			r.record(images[i], i);
+		}
+		assertEquals(2, r.getFrameCount());
+		// 3x2 tiles of 32x32, 70x40 pixels in total, per frame
+		assertEquals(2 * 4 * 70 * 40, r.getStoredBytes());
+
+		final File dir = folder.newFolder("ring.flight");
+		final FlightRecorder.Snapshot snapshot = r.snapshot();
+		snapshot.write(dir);
+		snapshot.release();
+		assertArrayEquals(pixels(images[2]), frame(dir, 0));
+		assertArrayEquals(pixels(images[3]), frame(dir, 1));
+		assertFalse(new File(dir, "frame_0002.png").exists());
+	}
+
+	@Test
+	public void test_annotations() throws IOException {
+		final FlightRecorder r = recorder(10);
+		final BufferedImage image = window(Color.RED);
+		r.record(image, 0);
+		// Nothing changed and nothing was replayed, so no frame is kept.
+		r.record(window(Color.RED), 1);
+		assertEquals(1, r.getFrameCount());
+
+		r.annotate("mouseMove step 0 of a.png");
+		r.annotate("compare a.png");
+		r.record(window(Color.RED), 2);
+		assertEquals(2, r.getFrameCount());
+
+		final File dir = folder.newFolder("annotations.flight");
+		final FlightRecorder.Snapshot snapshot = r.snapshot();
+		snapshot.write(dir);
+		snapshot.release();
+		final List<String> index = Files.readAllLines(new File(dir, "frames.txt").toPath(), StandardCharsets.UTF_8);
+		assertEquals(2, index.size());
+		assertTrue(index.get(0), index.get(0).matches("frame_0000.png -?\\d+ms"));
+		assertTrue(index.get(1), index.get(1).endsWith(" [mouseMove step 0 of a.png] [compare a.png]"));
+		assertArrayEquals(pixels(image), frame(dir, 1));
+	}
+
+	@Test
+	public void test_snapshot_unaffected_by_later_captures() throws IOException {
+		final FlightRecorder r = recorder(1);
+		final BufferedImage green = patched(Color.GREEN, 0, 0);
+		r.record(window(Color.RED), 0);
+		r.record(green, 1);
+		final FlightRecorder.Snapshot snapshot = r.snapshot();
+
+		// Each evicts a frame into the oldest state, which the snapshot shares.
+		// Only the tile holding the patch changes.
+		r.record(patched(Color.BLUE, 64, 32), 2);
+		r.record(patched(Color.YELLOW, 40, 0), 3);
+
+		final File dir = folder.newFolder("pinned.flight");
+		snapshot.write(dir);
+		snapshot.release();
+		assertArrayEquals(pixels(green), frame(dir, 0));
+		assertFalse(new File(dir, "frame_0001.png").exists());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void test_write_after_release() throws IOException {
+		final FlightRecorder r = recorder(1);
+		r.record(window(Color.RED), 0);
+		final FlightRecorder.Snapshot snapshot = r.snapshot();
+		snapshot.release();
+		snapshot.write(folder.newFolder("released.flight"));
+	}
+
+	@Test
+	public void test_write_deletes_stale_frames() throws IOException {
+		final FlightRecorder r = recorder(3);
+		r.record(window(Color.RED), 0);
+		r.record(window(Color.GREEN), 1);
+		r.record(window(Color.BLUE), 2);
+
+		final File dir = folder.newFolder("stale.flight");
+		final FlightRecorder.Snapshot first = r.snapshot();
+		first.write(dir);
+		first.release();
+		assertTrue(new File(dir, "frame_0002.png").exists());
+
+		final FlightRecorder other = recorder(3);
+		other.record(window(Color.YELLOW), 0);
+		final FlightRecorder.Snapshot second = other.snapshot();
+		second.write(dir);
+		second.release();
+		assertArrayEquals(pixels(window(Color.YELLOW)), frame(dir, 0));
+		assertFalse(new File(dir, "frame_0001.png").exists());
+		assertFalse(new File(dir, "frame_0002.png").exists());
+	}
+
+	@Test
+	public void test_stop_all() {
+		final FlightRecorder r = recorder(1);
+		r.start();
+		assertTrue(r.isRunning());
+		FlightRecorder.stopAll();
+		assertFalse(r.isRunning());
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ImageTilesTest {
+
+	@Test
+	public void test_changed_tiles() {
+		final BufferedImage previous = new BufferedImage(70, 40, BufferedImage.TYPE_INT_ARGB);
+		final BufferedImage current = ImageTiles.copy(previous);
+		current.setRGB(65, 35, 0xFF123456);
+
+		// 3x2 tiles, only the partial bottom right tile changed
+		assertEquals(6, ImageTiles.changedTiles(null, current, 32).size());
+		final List<ImageTiles.Tile> tiles = ImageTiles.changedTiles(previous, current, 32);
+		assertEquals(1, tiles.size());
+		assertEquals(64, tiles.get(0).x);
+		assertEquals(32, tiles.get(0).y);
+		assertEquals(6, tiles.get(0).width);
+		assertEquals(8, tiles.get(0).height);
+
+		final BufferedImage rebuilt = ImageTiles.apply(ImageTiles.copy(previous), 70, 40, tiles);
+		assertEquals(0xFF123456, rebuilt.getRGB(65, 35));
+		assertEquals(0, ImageTiles.changedTiles(current, rebuilt, 32).size());
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LatencyBaselineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static StepLatency step(final String checkpoint, final int step, final Duration handling) {
+		return new StepLatency(checkpoint, step, Duration.ZERO, handling, Duration.ZERO, null);
+	}
+
+	@Test
+	public void test_parse() throws IOException {
+		final File file = folder.newFile("latency_baseline.csv");
+		Files.write(file.toPath(), Arrays.asList("# comment", "screenshot_1.png,0,1500", "a,b.png,3,20000",
+				"end,1,250", "malformed", ""), StandardCharsets.UTF_8);
+
+		final LatencyBaseline baseline = LatencyBaseline.read(file, 3.0, Duration.ofMillis(100));
+		assertEquals(Duration.ofNanos(1500000), baseline.get("screenshot_1.png", 0));
+		// Checkpoint names may contain commas.
+		assertEquals(Duration.ofMillis(20), baseline.get("a,b.png", 3));
+		assertEquals(Duration.ofNanos(250000), baseline.get("end", 1));
+		assertNull(baseline.get("screenshot_1.png", 1));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void test_parse_bad_number() {
+		LatencyBaseline.parse(Arrays.asList("screenshot_1.png,0,fast"), 3.0, Duration.ZERO);
+	}
+
+	@Test
+	public void test_check() {
+		// Limit is 20ms * 3 + 100ms = 160ms.
+		final LatencyBaseline baseline = LatencyBaseline.parse(Arrays.asList("a.png,2,20000"), 3.0,
+				Duration.ofMillis(100));
+		assertNull(baseline.check(step("a.png", 2, Duration.ofMillis(160))));
+		assertEquals("Step 2 before a.png took 161ms to handle, recorded 20ms",
+				baseline.check(step("a.png", 2, Duration.ofMillis(161))));
+
+		// Steps without a recorded or measured latency are not checked.
+		assertNull(baseline.check(step("a.png", 3, Duration.ofSeconds(10))));
+		assertNull(baseline.check(step("a.png", 2, null)));
+		assertNotNull(LatencyBaseline.parse(Arrays.asList("a.png,2,0"), 1.0, Duration.ZERO)
+				.check(step("a.png", 2, Duration.ofNanos(1))));
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MousePathSimplifierTest {
+
+	@Test
+	public void test_straight_line() {
+		final List<Point> path = Arrays.asList(new Point(0, 0), new Point(10, 1), new Point(20, 0),
+				new Point(30, 1), new Point(40, 0));
+		final boolean[] keep = MousePathSimplifier.simplify(path, null, 2);
+		assertArrayEquals(new boolean[] { true, false, false, false, true }, keep);
+	}
+
+	@Test
+	public void test_corner() {
+		final List<Point> path = Arrays.asList(new Point(0, 0), new Point(20, 0), new Point(40, 0),
+				new Point(40, 20), new Point(40, 40));
+		final boolean[] keep = MousePathSimplifier.simplify(path, null, 2);
+		assertArrayEquals(new boolean[] { true, false, true, false, true }, keep);
+	}
+
+	@Test
+	public void test_pinned() {
+		final List<Point> path = Arrays.asList(new Point(0, 0), new Point(10, 0), new Point(20, 0),
+				new Point(30, 0));
+		final boolean[] pinned = new boolean[] { false, true, false, false };
+		final boolean[] keep = MousePathSimplifier.simplify(path, pinned, 2);
+		assertArrayEquals(new boolean[] { true, true, false, true }, keep);
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReferenceDeltaTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static BufferedImage window(final String text) {
+		final BufferedImage image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = image.createGraphics();
+		g.setColor(Color.LIGHT_GRAY);
+		g.fillRect(0, 0, 200, 100);
+		g.setColor(Color.BLACK);
+		g.drawString(text, 10, 20);
+		g.dispose();
+		return image;
+	}
+
+	private static int[] pixels(final BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+
+	@Test
+	public void test_reconstruct() throws IOException {
+		final File dir = folder.getRoot();
+		final BufferedImage first = window("A");
+		final BufferedImage second = window("AB");
+		final BufferedImage third = window("ABC");
+
+		assertFalse(ReferenceDelta.writeReference(new File(dir, "first.png"), first, null, null));
+		assertTrue(ReferenceDelta.writeReference(new File(dir, "second.png"), second, "first.png", first));
+		assertTrue(ReferenceDelta.writeReference(new File(dir, "third.png"), third, "second.png", second));
+		assertFalse(new File(dir, "third.png").exists());
+		assertTrue(ReferenceDelta.read(new File(dir, "third.tiles")).getTileCount() <= 2);
+		assertEquals(Collections.singletonList("third.png"), ReferenceDelta.findDependents(dir, "second.png"));
+
+		final ReferenceImageStore store = new ReferenceImageStore();
+		store.prefetch(new File(dir, "third.png"));
+		store.prefetch(new File(dir, "second.png"));
+		assertArrayEquals(pixels(third), pixels(store.get(new File(dir, "third.png"))));
+		assertArrayEquals(pixels(second), pixels(store.get(new File(dir, "second.png"))));
+	}
+
+	@Test
+	public void test_keyframe() throws IOException {
+		final File dir = folder.getRoot();
+		final BufferedImage first = window("A");
+		final BufferedImage resized = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		assertFalse(ReferenceDelta.writeReference(new File(dir, "resized.png"), resized, "first.png", first));
+		assertFalse(ReferenceDelta.writeReference(new File(dir, "first.png"), first, "first.png", first));
+		assertFalse(new File(dir, "first.tiles").exists());
+	}
+
+	@Test
+	public void test_base_size_mismatch() throws IOException {
+		final File dir = folder.getRoot();
+		assertTrue(ReferenceDelta.writeReference(new File(dir, "second.png"), window("AB"), "first.png", window("A")));
+		assertEquals("first.png", ReferenceDelta.readBaseName(new File(dir, "second.tiles")));
+
+		try {
+			ReferenceDelta.read(new File(dir, "second.tiles"))
+					.apply(new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB));
+			fail("Resized base not reported");
+		} catch (final IllegalStateException e) {
+			assertEquals("Base first.png is 100x100, expected 200x100", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReferenceImageStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File writeImage(final String name) throws IOException {
+		final BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_3BYTE_BGR);
+		image.setRGB(3, 4, 0xFF00FF);
+		final File file = folder.newFile(name);
+		ImageIO.write(image, "PNG", file);
+		return file;
+	}
+
+	@Test
+	public void test_prefetch() throws IOException {
+		final File first = writeImage("first.png");
+		final File second = writeImage("second.png");
+		final ReferenceImageStore store = new ReferenceImageStore();
+
+		store.prefetch(first);
+		final BufferedImage image = store.get(first);
+		assertEquals(BufferedImage.TYPE_INT_ARGB, image.getType());
+		assertEquals(0xFFFF00FF, image.getRGB(3, 4));
+		assertEquals(1, store.getHitCount() + store.getStallCount());
+
+		store.get(second);
+		assertEquals(1, store.getMissCount());
+	}
+
+	@Test
+	public void test_translucent_pixels_exact() throws IOException {
+		final int[] argb = { 0x00123456, 0x01FF0000, 0x80FF8040, 0xFE010203, 0xFFFFFFFF };
+		final BufferedImage image = new BufferedImage(argb.length, 1, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, argb.length, 1, argb, 0, argb.length);
+		final File file = folder.newFile("translucent.png");
+		ImageIO.write(image, "PNG", file);
+
+		final BufferedImage read = ReferenceImageStore.readImage(file);
+		assertEquals(BufferedImage.TYPE_INT_ARGB, read.getType());
+		assertArrayEquals(argb, read.getRGB(0, 0, argb.length, 1, null, 0, argb.length));
+	}
+
+	@Test
+	public void test_invalidate() throws IOException {
+		final File file = writeImage("image.png");
+		final ReferenceImageStore store = new ReferenceImageStore();
+
+		store.get(file);
+		store.invalidate(file);
+		store.get(file);
+		assertEquals(2, store.getMissCount());
+	}
+
+	@Test
+	public void test_changed_file_reloaded() throws IOException {
+		final File file = writeImage("image.png");
+		final ReferenceImageStore store = new ReferenceImageStore();
+		store.get(file);
+
+		final BufferedImage changed = new BufferedImage(30, 10, BufferedImage.TYPE_INT_ARGB);
+		ImageIO.write(changed, "PNG", file);
+		file.setLastModified(file.lastModified() + 2000);
+		assertEquals(30, store.get(file).getWidth());
+		assertEquals(2, store.getMissCount());
+	}
+
+	@Test
+	public void test_shared() throws IOException {
+		final File file = writeImage("image.png");
+		ReferenceImageStore.shared().get(file);
+
+		final ReferenceImageStore second = ReferenceImageStore.shared();
+		second.get(file);
+		assertEquals(1, second.getHitCount());
+		assertEquals(0, second.getMissCount());
+
+		ReferenceImageStore.trimShared(0);
+		second.get(file);
+		assertEquals(1, second.getMissCount());
+		ReferenceImageStore.clearShared();
+	}
+
+	@Test
+	public void test_trim_shared_least_recently_used() throws IOException {
+		ReferenceImageStore.clearShared();
+		final File first = writeImage("first.png");
+		final File second = writeImage("second.png");
+		final File third = writeImage("third.png");
+		final ReferenceImageStore store = ReferenceImageStore.shared();
+		store.get(first);
+		store.get(second);
+		store.get(third);
+		store.get(first);
+		// 20x10 ARGB pixels each
+		assertEquals(3 * 800, ReferenceImageStore.getSharedBytes());
+
+		ReferenceImageStore.trimShared(2 * 800);
+		assertEquals(2 * 800, ReferenceImageStore.getSharedBytes());
+		store.get(first);
+		store.get(third);
+		assertEquals(3, store.getMissCount());
+		store.get(second);
+		assertEquals(4, store.getMissCount());
+		ReferenceImageStore.clearShared();
+	}
+
+	@Test
+	public void test_retain_only() throws IOException {
+		final File kept = writeImage("kept.png");
+		final File dropped = writeImage("dropped.png");
+		final ReferenceImageStore store = new ReferenceImageStore();
+		store.get(kept);
+		store.get(dropped);
+
+		store.retainOnly(Collections.singletonList(kept));
+		store.get(kept);
+		store.get(dropped);
+		assertEquals(1, store.getHitCount());
+		assertEquals(3, store.getMissCount());
+	}
+}
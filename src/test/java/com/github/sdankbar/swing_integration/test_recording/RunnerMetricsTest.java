@@ -0,0 +1,44 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RunnerMetricsTest {
+
+	@Test
+	public void test_json() {
+		final RunnerMetrics metrics = new RunnerMetrics();
+		metrics.onEvent(new RunnerEvent(RunnerEvent.Type.COMPARISON, "a.png", "a.png", 2000000, 10, 10, 42.5, 2));
+		metrics.onEvent(new RunnerEvent(RunnerEvent.Type.DELAY, "b.png", "delay", 5000000, 0, 0, Double.NaN, 0));
+
+		final String json = metrics.toJson();
+		assertTrue(json, json.contains("\"COMPARISON\": {\"count\": 1, \"totalMillis\": 2.000, \"maxMillis\": 2.000}"));
+		assertTrue(json, json.contains("{\"name\": \"a.png\", \"totalMillis\": 2.000, \"COMPARISON\": 2.000, "
+				+ "\"attempts\": 2, \"psnr\": 42.500}"));
+		// Longest checkpoint first
+		assertTrue(json, json.indexOf("b.png") < json.indexOf("a.png"));
+	}
+}
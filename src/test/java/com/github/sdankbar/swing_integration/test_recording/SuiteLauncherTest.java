@@ -0,0 +1,96 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class SuiteLauncherTest {
+
+	@Test
+	public void test_order_longest_first() {
+		final Properties durations = new Properties();
+		durations.setProperty("a.Short", "100");
+		durations.setProperty("a.Long", "9000");
+		durations.setProperty("a.Medium", "2500");
+
+		// Classes without a recorded duration run first, keeping their order.
+		assertEquals(Arrays.asList("a.New1", "a.New2", "a.Long", "a.Medium", "a.Short"), SuiteLauncher
+				.orderLongestFirst(Arrays.asList("a.Short", "a.New1", "a.Long", "a.Medium", "a.New2"), durations));
+	}
+
+	@Test
+	public void test_order_no_durations() {
+		assertEquals(Arrays.asList("b", "a", "c"),
+				SuiteLauncher.orderLongestFirst(Arrays.asList("b", "a", "c"), new Properties()));
+		assertEquals(Collections.emptyList(),
+				SuiteLauncher.orderLongestFirst(Collections.<String>emptyList(), new Properties()));
+	}
+
+	@Test
+	public void test_order_invalid_durations() {
+		final Properties durations = new Properties();
+		durations.setProperty("a.Short", "100");
+		durations.setProperty("a.Edited", "12 seconds");
+		durations.setProperty("a.Empty", "");
+		durations.setProperty("a.Long", " 9000 ");
+
+		// Durations that are not numbers are treated as unknown.
+		assertEquals(Arrays.asList("a.Edited", "a.Empty", "a.Long", "a.Short"), SuiteLauncher
+				.orderLongestFirst(Arrays.asList("a.Short", "a.Edited", "a.Long", "a.Empty"), durations));
+	}
+
+	@Test
+	public void test_read_line() {
+		final SuiteLauncher.ClassResult result = new SuiteLauncher.ClassResult("a.Test", 1);
+		assertFalse(SuiteLauncher.readLine("Some output", result));
+		assertFalse(SuiteLauncher.readLine(SuiteWorker.FAILURE + "\ta.Test\ttest_a(a.Test)\t"
+				+ SuiteWorker.escape("expected:<1>\nbut was:<2>"), result));
+		assertTrue(SuiteLauncher.readLine(SuiteWorker.RESULT + "\ta.Test\t3\t1\t0\t1500", result));
+
+		assertEquals(Arrays.asList("test_a(a.Test): expected:<1>\nbut was:<2>"), result.messages);
+		assertEquals(3, result.run);
+		assertEquals(1, result.failures);
+		assertEquals(0, result.ignored);
+		assertEquals(1500, result.millis);
+	}
+
+	@Test
+	public void test_read_malformed_result() {
+		final SuiteLauncher.ClassResult result = new SuiteLauncher.ClassResult("a.Test", 1);
+		try {
+			SuiteLauncher.readLine(SuiteWorker.RESULT + "\ta.Test\t3\t1\t0\tsoon", result);
+			fail("Malformed result not reported");
+		} catch (final IllegalArgumentException e) {
+			assertEquals("sent a malformed result: RESULT\\ta.Test\\t3\\t1\\t0\\tsoon", e.getMessage());
+		}
+	}
+}
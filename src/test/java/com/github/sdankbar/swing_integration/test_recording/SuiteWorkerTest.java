@@ -0,0 +1,50 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+public class SuiteWorkerTest {
+
+	@Test
+	public void test_escape() {
+		assertEquals("", SuiteWorker.escape(null));
+		assertEquals("a\\tb\\nc\\rd\\\\e", SuiteWorker.escape("a\tb\nc\rd\\e"));
+	}
+
+	@Test
+	public void test_round_trip() {
+		final String[] values = { "", "plain", "tab\tnew\nline\r", "\\t is not a tab", "trailing\\",
+				"java.lang.AssertionError: expected:<1>\n\tat Foo.bar(Foo.java:10)\r\n" };
+		for (final String v : values) {
+			final String escaped = SuiteWorker.escape(v);
+			assertFalse(escaped.contains("\t"));
+			assertFalse(escaped.contains("\n"));
+			assertFalse(escaped.contains("\r"));
+			assertEquals(v, SuiteWorker.unescape(escaped));
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDaemonTest {
+
+	/**
+	 * Run by the daemon.
+	 */
+	public static class Sample {
+		static volatile boolean fail = false;
+
+		@Test
+		public void test_sample() {
+			assertFalse("Failed on purpose", fail);
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final AtomicInteger resetCount = new AtomicInteger();
+	private File connectionFile;
+	private Thread serveThread;
+
+	@Before
+	public void setup() throws InterruptedException {
+		connectionFile = new File(folder.getRoot(), "daemon");
+		final TestDaemon daemon = new TestDaemon(0, resetCount::incrementAndGet);
+		daemon.setConnectionFile(connectionFile);
+		daemon.setReferenceCacheSize(0);
+		serveThread = new Thread(() -> {
+			try {
+				daemon.serve();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}, "TestDaemonTest-serve");
+		serveThread.start();
+
+		final long end = System.currentTimeMillis() + 10000;
+		while (!connectionFile.exists() && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		assertTrue(connectionFile.exists());
+	}
+
+	@After
+	public void shutdown() throws IOException, InterruptedException {
+		Sample.fail = false;
+		try (Socket socket = TestDaemon.connect(connectionFile)) {
+			new PrintStream(socket.getOutputStream(), true, "UTF-8").println(TestDaemon.SHUTDOWN);
+			assertEquals(TestDaemon.OK,
+					new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+							.readLine());
+		}
+		serveThread.join(10000);
+		assertFalse(serveThread.isAlive());
+		assertFalse(connectionFile.exists());
+		ReferenceImageStore.clearShared();
+	}
+
+	@Test
+	public void test_connection_file() throws IOException {
+		if (Files.getFileStore(connectionFile.toPath()).supportsFileAttributeView("posix")) {
+			assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+					Files.getPosixFilePermissions(connectionFile.toPath()));
+		}
+	}
+
+	@Test
+	public void test_not_authorized() throws IOException {
+		final Properties properties = new Properties();
+		properties.load(Files.newBufferedReader(connectionFile.toPath(), StandardCharsets.UTF_8));
+		final int port = Integer.parseInt(properties.getProperty("port"));
+
+		for (final String first : new String[] { TestDaemon.RUN + " " + Sample.class.getName(),
+				TestDaemon.AUTH + " wrong" }) {
+			try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+				new PrintStream(socket.getOutputStream(), true, "UTF-8").println(first);
+				final BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				assertEquals(TestDaemon.ERROR + "\tNot authorized", in.readLine());
+				assertNull(in.readLine());
+			}
+		}
+		assertEquals(0, resetCount.get());
+	}
+
+	@Test
+	public void test_commands() throws IOException {
+		final File image = folder.newFile("image.png");
+		ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB), "PNG", image);
+		ReferenceImageStore.shared().get(image);
+		assertEquals(800, ReferenceImageStore.getSharedBytes());
+
+		try (Socket socket = TestDaemon.connect(connectionFile)) {
+			final PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+			final BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+			out.println(TestDaemon.RUN + " " + Sample.class.getName());
+			assertEquals(SuiteWorker.RESULT + "\t" + Sample.class.getName() + "\t1\t0\t0",
+					in.readLine().replaceAll("\t\\d+$", ""));
+			assertEquals(0, resetCount.get());
+
+			Sample.fail = true;
+			out.println(TestDaemon.RUN + " " + Sample.class.getName() + "#test_sample");
+			final String[] failure = in.readLine().split("\t", -1);
+			assertEquals(SuiteWorker.FAILURE, failure[0]);
+			assertEquals("test_sample(" + Sample.class.getName() + ")", SuiteWorker.unescape(failure[2]));
+			assertEquals("Failed on purpose", SuiteWorker.unescape(failure[3]));
+			assertTrue(in.readLine().startsWith(SuiteWorker.RESULT + "\t"));
+			// Reset before every test after the first
+			assertEquals(1, resetCount.get());
+
+			out.println(TestDaemon.RESET);
+			assertEquals(TestDaemon.OK, in.readLine());
+			assertEquals(2, resetCount.get());
+			// Trimmed to the cache size after each test
+			assertEquals(0, ReferenceImageStore.getSharedBytes());
+
+			out.println(TestDaemon.CLEAR);
+			assertEquals(TestDaemon.OK, in.readLine());
+			out.println("BOGUS");
+			assertEquals(TestDaemon.ERROR + "\tUnknown command: BOGUS", in.readLine());
+		}
+	}
+}
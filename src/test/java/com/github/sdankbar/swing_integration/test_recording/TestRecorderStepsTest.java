@@ -0,0 +1,176 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.event.MouseEvent;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+
+import org.junit.Test;
+
+import com.github.sdankbar.swing_integration.test_recording.TestRecorder.ActiveWindow;
+import com.github.sdankbar.swing_integration.test_recording.TestRecorder.RecordedEvent;
+import com.github.sdankbar.swing_integration.test_recording.TestRecorder.TestSegment;
+
+public class TestRecorderStepsTest {
+
+	private static final Instant START = Instant.ofEpochMilli(1000000);
+	private static final ActiveWindow WINDOW = new ActiveWindow("MainWindow", new Point(0, 0));
+
+	private final Component label = new JLabel();
+	private final Component button = new JButton();
+
+	private static RecordedEvent mouse(final Component c, final int id, final long millis, final int x, final int y,
+			final ActiveWindow w) {
+		final MouseEvent e = new MouseEvent(c, id, START.toEpochMilli() + millis, 0, x, y, x, y, 1, false,
+				id == MouseEvent.MOUSE_MOVED || id == MouseEvent.MOUSE_DRAGGED ? MouseEvent.NOBUTTON
+						: MouseEvent.BUTTON1);
+		final boolean motion = (id == MouseEvent.MOUSE_MOVED) || (id == MouseEvent.MOUSE_DRAGGED);
+		return new RecordedEvent(e, START.plusMillis(millis), motion, w);
+	}
+
+	private static RecordedEvent move(final Component c, final long millis, final int x, final int y) {
+		return mouse(c, MouseEvent.MOUSE_MOVED, millis, x, y, WINDOW);
+	}
+
+	@Test
+	public void test_pinned_motion() {
+		final RecordedEvent first = move(label, 0, 10, 10);
+		assertFalse(TestRecorder.isPinnedMotion(null, first));
+		assertFalse(TestRecorder.isPinnedMotion(first, move(label, 100, 20, 10)));
+		assertTrue(TestRecorder.isPinnedMotion(first, move(button, 100, 20, 10)));
+		assertTrue(TestRecorder.isPinnedMotion(first, mouse(label, MouseEvent.MOUSE_DRAGGED, 100, 20, 10, WINDOW)));
+		assertTrue(TestRecorder.isPinnedMotion(first,
+				mouse(label, MouseEvent.MOUSE_MOVED, 100, 20, 10, new ActiveWindow("Dialog", new Point(0, 0)))));
+		assertTrue(TestRecorder.isPinnedMotion(first, mouse(label, MouseEvent.MOUSE_MOVED, 100, 20, 10, null)));
+	}
+
+	@Test
+	public void test_simplify_keeps_hover_change_and_last_move() {
+		final RecordedEvent start = move(label, 100, 0, 0);
+		final RecordedEvent straight = move(label, 200, 10, 0);
+		final RecordedEvent hoverFrom = move(label, 300, 20, 0);
+		final RecordedEvent hoverTo = move(button, 400, 30, 0);
+		final RecordedEvent straight2 = move(button, 500, 40, 0);
+		final RecordedEvent last = move(button, 600, 50, 0);
+		final RecordedEvent press = mouse(button, MouseEvent.MOUSE_PRESSED, 600, 50, 0, WINDOW);
+
+		final List<RecordedEvent> simplified = TestRecorder.simplifyRecording(
+				Arrays.asList(start, straight, hoverFrom, hoverTo, straight2, last, press));
+		assertEquals(Arrays.asList(start, hoverFrom, hoverTo, last, press), simplified);
+	}
+
+	@Test
+	public void test_delays() {
+		final TestRecorder recorder = new TestRecorder(TestRecorder.RecordingMode.ABSOLUTE, false);
+		final List<RecordedEvent> events = TestRecorder.simplifyRecording(Arrays.asList(move(label, 100, 0, 0),
+				move(label, 200, 10, 0), move(label, 300, 20, 0), move(label, 400, 30, 0),
+				mouse(label, MouseEvent.MOUSE_PRESSED, 400, 30, 0, WINDOW),
+				mouse(label, MouseEvent.MOUSE_RELEASED, 500, 30, 0, WINDOW)));
+
+		final List<TestSegment> segments = recorder.buildSegments(events, START, new ArrayList<>());
+		assertEquals(1, segments.size());
+		assertNull(segments.get(0).checkpoint);
+		// The removed moves' time is folded into the delay before the last move and
+		// the press at the same time as that move gets no delay.
+		assertEquals(Arrays.asList("\t\ttools.delay(100);\n", "\t\ttools.mouseMove(0, 0);\n",
+				"\t\ttools.delay(300);\n", "\t\ttools.mouseMove(30, 0);\n",
+				"\t\ttools.mousePress(30, 0,InputEvent.BUTTON1_DOWN_MASK);\n", "\t\ttools.delay(100);\n",
+				"\t\ttools.mouseRelease(30, 0,InputEvent.BUTTON1_DOWN_MASK);\n"), segments.get(0).steps);
+	}
+
+	@Test
+	public void test_merged_delays() {
+		final List<RecordedEvent> recorded = Arrays.asList(move(label, 100, 0, 0), move(label, 200, 10, 0),
+				move(label, 300, 20, 0), move(label, 300, 25, 0), move(label, 400, 30, 0),
+				mouse(label, MouseEvent.MOUSE_PRESSED, 400, 30, 0, WINDOW));
+		final List<RecordedEvent> kept = TestRecorder.simplifyRecording(recorded);
+		assertEquals(Arrays.asList(recorded.get(0), recorded.get(4), recorded.get(5)), kept);
+		// The move at 25, 0 had no delay before it to merge.
+		assertEquals(2, TestRecorder.countMergedDelays(recorded, kept, START));
+	}
+
+	@Test
+	public void test_drags_not_simplified() {
+		final List<RecordedEvent> recorded = Arrays.asList(
+				mouse(label, MouseEvent.MOUSE_PRESSED, 100, 0, 0, WINDOW),
+				mouse(label, MouseEvent.MOUSE_DRAGGED, 200, 10, 0, WINDOW),
+				mouse(label, MouseEvent.MOUSE_DRAGGED, 300, 20, 0, WINDOW),
+				mouse(label, MouseEvent.MOUSE_DRAGGED, 400, 30, 0, WINDOW),
+				mouse(label, MouseEvent.MOUSE_RELEASED, 400, 30, 0, WINDOW));
+		assertEquals(recorded, TestRecorder.simplifyRecording(recorded));
+	}
+
+	private static String writeStepMethod(final int stepCount) throws IOException {
+		final StringWriter out = new StringWriter();
+		try (BufferedWriter w = new BufferedWriter(out)) {
+			TestRecorder.writeStepMethod(w, "checkpoint_1", Collections.nCopies(stepCount, "\t\ttools.delay(1);\n"));
+		}
+		return out.toString();
+	}
+
+	private static int count(final String text, final String part) {
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+			++count;
+		}
+		return count;
+	}
+
+	@Test
+	public void test_step_method() throws IOException {
+		final String method = writeStepMethod(TestRecorder.MAX_STEPS_PER_METHOD);
+		assertTrue(method.startsWith("\n\tprivate void checkpoint_1(final TestRunner tools) {\n\t\ttools.delay(1);\n"));
+		assertEquals(TestRecorder.MAX_STEPS_PER_METHOD, count(method, "tools.delay(1);"));
+		assertFalse(method.contains("_part_"));
+	}
+
+	@Test
+	public void test_step_method_split() throws IOException {
+		final String method = writeStepMethod((2 * TestRecorder.MAX_STEPS_PER_METHOD) + 1);
+		assertTrue(method.startsWith("\n\tprivate void checkpoint_1(final TestRunner tools) {\n"
+				+ "\t\tcheckpoint_1_part_1(tools);\n\t\tcheckpoint_1_part_2(tools);\n"
+				+ "\t\tcheckpoint_1_part_3(tools);\n\t}\n"));
+		assertEquals((2 * TestRecorder.MAX_STEPS_PER_METHOD) + 1, count(method, "tools.delay(1);"));
+
+		final String lastPart = method.substring(method.indexOf("private void checkpoint_1_part_3("));
+		assertEquals(1, count(lastPart, "tools.delay(1);"));
+		assertFalse(method.contains("_part_4"));
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * The MIT License
+ * Copyright © 2024 Stephen Dankbar
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.sdankbar.swing_integration.test_recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+import org.junit.rules.TemporaryFolder;
+
+public class TestRunnerTest {
+
+	/**
+	 * Keeps reported errors so tests can check them.
+	 */
+	private static final class RecordingCollector extends ErrorCollector {
+		private final List<Throwable> errors = new ArrayList<>();
+
+		@Override
+		public void addError(final Throwable error) {
+			errors.add(error);
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final RecordingCollector collector = new RecordingCollector();
+	private BufferedImage screen = null;
+	private TestRunner runner;
+
+	private static BufferedImage window(final Color color) {
+		final BufferedImage image = new BufferedImage(60, 40, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = image.createGraphics();
+		g.setColor(color);
+		g.fillRect(0, 0, 60, 40);
+		g.dispose();
+		return image;
+	}
+
+	@Before
+	public void setup() throws IOException {
+		ImageIO.write(window(Color.RED), "PNG", new File(folder.getRoot(), "red.png"));
+		ImageIO.write(window(Color.GREEN), "PNG", new File(folder.getRoot(), "green.png"));
+		// No robot, tests only compare.
+		runner = new TestRunner(folder.getRoot(), collector, 65, null, () -> screen);
+		runner.setStartCheckpoint(null);
+	}
+
+	@Test
+	public void test_deferred_mismatch() {
+		screen = window(Color.BLUE);
+		runner.compareDeferred("red.png");
+		screen = window(Color.GREEN);
+		runner.compareDeferred("green.png");
+		assertTrue(collector.errors.isEmpty());
+
+		runner.awaitComparisons();
+		assertEquals(1, collector.errors.size());
+		assertEquals("Image does not match red.png. See red.delta.png", collector.errors.get(0).getMessage());
+		assertTrue(new File(folder.getRoot(), "red.delta.png").exists());
+
+		runner.close();
+		assertEquals(1, collector.errors.size());
+	}
+
+	@Test
+	public void test_close_reports_unawaited_mismatch() {
+		screen = window(Color.BLUE);
+		runner.compareDeferred("red.png");
+		runner.compareDeferred("green.png");
+		try {
+			runner.close();
+			fail("Mismatches not reported");
+		} catch (final RuntimeException e) {
+			assertEquals(2, e.getSuppressed().length);
+		}
+		assertTrue(collector.errors.isEmpty());
+
+		// Nothing carries over to the next test.
+		runner.close();
+		runner.finish("next");
+		assertTrue(collector.errors.isEmpty());
+	}
+
+	@Test
+	public void test_start_checkpoint() {
+		final List<String> ran = new ArrayList<>();
+		screen = window(Color.GREEN);
+		runner.setStartCheckpoint("green.png");
+		runner.checkpoint("red.png", () -> ran.add("red.png"));
+		runner.checkpoint("green.png", () -> ran.add("green.png"));
+		runner.checkpoint("blue.png", () -> ran.add("blue.png"));
+		runner.afterCheckpoints(() -> ran.add("end"));
+		runner.finish("start_checkpoint");
+
+		assertEquals(Arrays.asList("blue.png", "end"), ran);
+		assertTrue(collector.errors.isEmpty());
+	}
+
+	@Test
+	public void test_start_checkpoint_not_found() {
+		final List<String> ran = new ArrayList<>();
+		runner.setStartCheckpoint("missing.png");
+		runner.checkpoint("red.png", () -> ran.add("red.png"));
+		try {
+			runner.afterCheckpoints(() -> ran.add("end"));
+			fail("Missing start checkpoint not reported");
+		} catch (final IllegalStateException e) {
+			assertEquals("Start checkpoint missing.png not found", e.getMessage());
+		}
+		assertEquals(Collections.emptyList(), ran);
+
+		try {
+			runner.finish("start_checkpoint_not_found");
+			fail("Missing start checkpoint not reported");
+		} catch (final IllegalStateException e) {
+			assertEquals("Start checkpoint missing.png not found", e.getMessage());
+		}
+	}
+
+	@Test
+	public void test_start_checkpoint_never_matched() {
+		screen = window(Color.BLUE);
+		runner.setStartCheckpoint("red.png");
+		TestRunner.setCheckpointTimeout(Duration.ofMillis(300));
+		try {
+			runner.checkpoint("red.png", () -> fail("Skipped steps ran"));
+			fail("Mismatched start checkpoint not reported");
+		} catch (final IllegalStateException e) {
+			assertEquals("Application never matched start checkpoint red.png", e.getMessage());
+		} finally {
+			TestRunner.setCheckpointTimeout(Duration.ofMillis(30000));
+		}
+	}
+}